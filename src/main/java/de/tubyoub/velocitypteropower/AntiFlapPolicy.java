@@ -0,0 +1,179 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps servers that bounce between stopped and started running longer.
+ * For every server it learns how likely a stop is followed by a start within the flap window,
+ * as an exponentially weighted moving average of the observed stop to start gaps.
+ * The idle timeout of a server is stretched by up to the configured factor according to that probability,
+ * so a server that is usually needed again shortly after being stopped is not stopped in the first place.
+ */
+public class AntiFlapPolicy {
+    private static final double ALPHA = 0.5;
+
+    private final ConfigurationManager configurationManager;
+    private final Map<String, FlapState> states = new ConcurrentHashMap<>();
+    private final LongAdder flaps = new LongAdder();
+    private final LongAdder avoidedColdStarts = new LongAdder();
+
+    /**
+     * Constructor for the AntiFlapPolicy class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public AntiFlapPolicy(VelocityPteroPower plugin) {
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("antiFlap.flaps", flaps::sum);
+        plugin.getStatistics().register("antiFlap.avoidedColdStarts", avoidedColdStarts::sum);
+        plugin.getStatistics().register("antiFlap.extendedServers", this::getExtendedServers);
+    }
+
+    /**
+     * This method records that a server has been stopped because it was idle.
+     *
+     * @param serverName the name of the server
+     */
+    public void onStopped(String serverName) {
+        FlapState state = states.computeIfAbsent(serverName, name -> new FlapState());
+        synchronized (state) {
+            expire(state, System.currentTimeMillis());
+            state.stoppedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * This method records that a server is started again.
+     * If the server was stopped within the flap window, the start counts as a revisit.
+     *
+     * @param serverName the name of the server
+     */
+    public void onStarting(String serverName) {
+        FlapState state = states.get(serverName);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.stoppedAt == 0) {
+                return;
+            }
+            long gap = System.currentTimeMillis() - state.stoppedAt;
+            boolean revisited = gap <= getWindowMillis();
+            if (revisited) {
+                flaps.increment();
+            }
+            state.update(revisited);
+        }
+    }
+
+    /**
+     * This method records that a player joined a server after its unextended idle timeout had already passed,
+     * so the server would have been stopped and cold started again without the extension.
+     *
+     * @param serverName the name of the server
+     */
+    public void onColdStartAvoided(String serverName) {
+        avoidedColdStarts.increment();
+    }
+
+    /**
+     * This method returns the idle timeout of a server with the anti-flap extension applied.
+     * The timeout is stretched by up to the configured maximum factor, proportional to the revisit probability of the server.
+     *
+     * @param serverName the name of the server
+     * @param timeout the configured timeout in seconds
+     * @return the effective timeout in seconds
+     */
+    public int getEffectiveTimeout(String serverName, int timeout) {
+        if (!configurationManager.isAntiFlapEnabled() || timeout <= 0) {
+            return timeout;
+        }
+        FlapState state = states.get(serverName);
+        if (state == null) {
+            return timeout;
+        }
+        double probability;
+        synchronized (state) {
+            expire(state, System.currentTimeMillis());
+            probability = state.revisitProbability;
+        }
+        double factor = 1 + probability * (Math.max(1, configurationManager.getAntiFlapMaxFactor()) - 1);
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(timeout * factor));
+    }
+
+    /**
+     * This method returns the revisit probability of a server.
+     *
+     * @param serverName the name of the server
+     * @return the probability between 0 and 1 that a stop of the server is followed by a start within the flap window
+     */
+    public double getRevisitProbability(String serverName) {
+        FlapState state = states.get(serverName);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.revisitProbability;
+        }
+    }
+
+    /**
+     * This method counts a stop that was not followed by a start within the flap window as a miss,
+     * so the probability of a server that stopped flapping decays without waiting for its next start.
+     */
+    private void expire(FlapState state, long now) {
+        if (state.stoppedAt != 0 && now - state.stoppedAt > getWindowMillis()) {
+            state.update(false);
+        }
+    }
+
+    private long getWindowMillis() {
+        return TimeUnit.SECONDS.toMillis(configurationManager.getAntiFlapWindow());
+    }
+
+    private long getExtendedServers() {
+        return states.values().stream().filter(state -> {
+            synchronized (state) {
+                return state.revisitProbability >= 0.01;
+            }
+        }).count();
+    }
+
+    private static class FlapState {
+        private long stoppedAt;
+        private double revisitProbability;
+
+        private void update(boolean revisited) {
+            revisitProbability += ALPHA * ((revisited ? 1 : 0) - revisitProbability);
+            stoppedAt = 0;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import de.tubyoub.velocitypteropower.api.PanelType;
+import dev.dejvokep.boostedyaml.block.implementation.Section;
+import dev.dejvokep.boostedyaml.route.Route;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the settings of one loaded configuration, everything except the servers and groups.
+ * All values are read when the settings are created and never change afterwards,
+ * so the settings are published together with the servers and groups in one {@link ConfigSnapshot}
+ * and a reader never sees values of two different configurations, for example a new panel URL with the old API key.
+ * The values are read through the getters of the {@link ConfigurationManager}.
+ */
+public final class ConfigSettings {
+    /**
+     * The settings that are used before the configuration has been loaded, every option has its default value.
+     */
+    public static final ConfigSettings DEFAULT = new ConfigSettings(null);
+
+    final String panelUrl;
+    final String apiKey;
+    final PanelType panel;
+    final boolean checkUpdate;
+    final int startupJoinDelay;
+    final int connectBatchSize;
+    final int connectBatchInterval;
+    final boolean adaptivePolling;
+    final ReadinessMode readinessMode;
+    final int pingTimeout;
+    final int connectTimeout;
+    final int requestTimeout;
+    final int panelThreads;
+    final int cacheTtl;
+    final int cacheMaxAge;
+    final int cacheRefreshInterval;
+    final boolean cacheBulkRefresh;
+    final boolean websocketEnabled;
+    final int websocketIdleTimeout;
+    final int maxConcurrentStarts;
+    final int startSlotTimeout;
+    final Map<String, Integer> nodeStartLimits;
+    final List<String> preStopCommands;
+    final int preStopDelay;
+    final int killTimeout;
+    final boolean antiFlapEnabled;
+    final int antiFlapWindow;
+    final int antiFlapMaxFactor;
+    final boolean memoryPressureEnabled;
+    final int memorySampleInterval;
+    final int maxNodeMemory;
+    final Map<String, Integer> nodeMemoryBudgets;
+    final boolean configWatcherEnabled;
+    final int configWatcherDebounce;
+    final boolean limboEnabled;
+    final String limboServer;
+    final int limboUpdateInterval;
+    final boolean predictiveStartEnabled;
+    final int predictiveStartMaxPlayers;
+    final int predictiveStartGracePeriod;
+    final boolean prewarmEnabled;
+    final int prewarmLeadTime;
+    final int prewarmMinJoins;
+    final int prewarmMaxServers;
+    final int requestsPerMinute;
+    final int interactiveReserve;
+    final int maxRetries;
+    final int retryDelay;
+    final int failureThreshold;
+    final int circuitOpenDuration;
+
+    /**
+     * Constructor for the ConfigSettings class.
+     * It reads the settings from the root section of a configuration document.
+     *
+     * @param config the configuration document, or null for the default settings
+     */
+    public ConfigSettings(Section config) {
+        checkUpdate = config == null || (boolean) config.get("checkUpdate");
+
+        Map<String, Object> startupJoin = getSectionValues(config, "startupJoin");
+        startupJoinDelay = (int) startupJoin.getOrDefault("joinDelay", 5);
+        connectBatchSize = (int) startupJoin.getOrDefault("connectBatchSize", 5);
+        connectBatchInterval = (int) startupJoin.getOrDefault("connectBatchInterval", 1000);
+        adaptivePolling = (boolean) startupJoin.getOrDefault("adaptivePolling", true);
+        readinessMode = ReadinessMode.fromString((String) startupJoin.getOrDefault("readiness", "both"));
+        pingTimeout = (int) startupJoin.getOrDefault("pingTimeout", 1000);
+
+        Map<String, Object> pterodactyl = getSectionValues(config, "pterodactyl");
+        String url = (String) pterodactyl.getOrDefault("url", "");
+        panelUrl = url.endsWith("/") ? url : url + "/";
+        apiKey = (String) pterodactyl.getOrDefault("apiKey", "");
+        panel = detectPanelType(apiKey);
+        connectTimeout = (int) pterodactyl.getOrDefault("connectTimeout", 5);
+        requestTimeout = (int) pterodactyl.getOrDefault("requestTimeout", 10);
+        panelThreads = (int) pterodactyl.getOrDefault("threads", 4);
+
+        Map<String, Object> cache = getSectionValues(config, "cache");
+        cacheTtl = (int) cache.getOrDefault("ttl", 10);
+        cacheMaxAge = (int) cache.getOrDefault("maxAge", 60);
+        cacheRefreshInterval = (int) cache.getOrDefault("refreshInterval", 15);
+        cacheBulkRefresh = (boolean) cache.getOrDefault("bulkRefresh", false);
+
+        Map<String, Object> rateLimit = getSectionValues(config, "rateLimit");
+        requestsPerMinute = (int) rateLimit.getOrDefault("requestsPerMinute", 240);
+        interactiveReserve = (int) rateLimit.getOrDefault("interactiveReserve", 20);
+
+        Map<String, Object> resilience = getSectionValues(config, "resilience");
+        maxRetries = (int) resilience.getOrDefault("maxRetries", 2);
+        retryDelay = (int) resilience.getOrDefault("retryDelay", 250);
+        failureThreshold = (int) resilience.getOrDefault("failureThreshold", 5);
+        circuitOpenDuration = (int) resilience.getOrDefault("openDuration", 30);
+
+        Map<String, Object> websocket = getSectionValues(config, "websocket");
+        websocketEnabled = (boolean) websocket.getOrDefault("enabled", false);
+        websocketIdleTimeout = (int) websocket.getOrDefault("idleTimeout", 120);
+
+        Map<String, Object> startLimit = getSectionValues(config, "startLimit");
+        maxConcurrentStarts = (int) startLimit.getOrDefault("maxConcurrentStarts", 0);
+        startSlotTimeout = (int) startLimit.getOrDefault("startTimeout", 180);
+        nodeStartLimits = getNodeValues(startLimit.get("nodes"), maxConcurrentStarts);
+
+        Map<String, Object> shutdown = getSectionValues(config, "shutdown");
+        List<String> commands = new ArrayList<>();
+        Object commandsObj = shutdown.get("preStopCommands");
+        if (commandsObj instanceof List) {
+            for (Object command : (List<?>) commandsObj) {
+                commands.add(String.valueOf(command));
+            }
+        }
+        preStopCommands = List.copyOf(commands);
+        preStopDelay = (int) shutdown.getOrDefault("preStopDelay", 5);
+        killTimeout = (int) shutdown.getOrDefault("killTimeout", 120);
+
+        Map<String, Object> antiFlap = getSectionValues(config, "antiFlap");
+        antiFlapEnabled = (boolean) antiFlap.getOrDefault("enabled", true);
+        antiFlapWindow = (int) antiFlap.getOrDefault("window", 300);
+        antiFlapMaxFactor = (int) antiFlap.getOrDefault("maxFactor", 8);
+
+        Map<String, Object> memoryPressure = getSectionValues(config, "memoryPressure");
+        memoryPressureEnabled = (boolean) memoryPressure.getOrDefault("enabled", false);
+        memorySampleInterval = (int) memoryPressure.getOrDefault("sampleInterval", 30);
+        maxNodeMemory = (int) memoryPressure.getOrDefault("maxMemory", 0);
+        nodeMemoryBudgets = getNodeValues(memoryPressure.get("nodes"), maxNodeMemory);
+
+        Map<String, Object> configWatcher = getSectionValues(config, "configWatcher");
+        configWatcherEnabled = (boolean) configWatcher.getOrDefault("enabled", false);
+        configWatcherDebounce = (int) configWatcher.getOrDefault("debounce", 1000);
+
+        Map<String, Object> limbo = getSectionValues(config, "limbo");
+        limboEnabled = (boolean) limbo.getOrDefault("enabled", false);
+        limboServer = (String) limbo.getOrDefault("server", "limbo");
+        limboUpdateInterval = (int) limbo.getOrDefault("updateInterval", 2);
+
+        Map<String, Object> predictiveStart = getSectionValues(config, "predictiveStart");
+        predictiveStartEnabled = (boolean) predictiveStart.getOrDefault("enabled", false);
+        predictiveStartMaxPlayers = (int) predictiveStart.getOrDefault("maxPlayers", 100000);
+        predictiveStartGracePeriod = (int) predictiveStart.getOrDefault("gracePeriod", 120);
+
+        Map<String, Object> prewarm = getSectionValues(config, "prewarm");
+        prewarmEnabled = (boolean) prewarm.getOrDefault("enabled", false);
+        prewarmLeadTime = (int) prewarm.getOrDefault("leadTime", 10);
+        prewarmMinJoins = (int) prewarm.getOrDefault("minJoins", 3);
+        prewarmMaxServers = (int) prewarm.getOrDefault("maxServers", 2);
+    }
+
+    /**
+     * This method reads the values of a top level section into a map.
+     * If the section does not exist, an empty map is returned.
+     *
+     * @param config the configuration document, or null
+     * @param name the name of the section
+     * @return a map of the keys and values of the section
+     */
+    private static Map<String, Object> getSectionValues(Section config, String name) {
+        Section section = config != null ? config.getSection(name) : null;
+        Map<String, Object> values = new HashMap<>();
+        if (section != null) {
+            for (Object keyObj : section.getKeys()) {
+                String key = (String) keyObj;
+                values.put(key, section.get(Route.fromString(key)));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * This method reads a section of panel nodes and their values, for example the start limits.
+     * Nodes whose value is not a whole number use the fallback.
+     *
+     * @param nodesObj the section of the nodes, or null if none are configured
+     * @param fallback the value of nodes without a valid value
+     * @return an immutable map of the node names and their values
+     */
+    private static Map<String, Integer> getNodeValues(Object nodesObj, int fallback) {
+        Map<String, Integer> values = new HashMap<>();
+        if (nodesObj instanceof Section) {
+            Section nodesSection = (Section) nodesObj;
+            for (Object nodeObj : nodesSection.getKeys()) {
+                String node = (String) nodeObj;
+                values.put(node, nodesSection.getInt(node, fallback));
+            }
+        }
+        return Map.copyOf(values);
+    }
+
+    private static PanelType detectPanelType(String apiKey) {
+        if (apiKey.startsWith("ptlc_")) {
+            return PanelType.pterodactyl;
+        } else if (apiKey.startsWith("peli_")) {
+            return PanelType.pelican;
+        } else {
+            // Default to Pterodactyl if the prefix is not recognized
+            return PanelType.pterodactyl;
+        }
+    }
+}
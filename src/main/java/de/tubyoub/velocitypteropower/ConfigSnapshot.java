@@ -0,0 +1,96 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * This record holds the servers, groups and settings of one loaded configuration.
+ * The maps are immutable copies and the settings never change, so a snapshot can be handed to any thread without locking,
+ * and a reload publishes a new snapshot instead of modifying the one that is in use.
+ *
+ * @param servers the configured servers by name
+ * @param groups the configured groups by name
+ * @param settings the other settings of the configuration
+ */
+public record ConfigSnapshot(Map<String, PteroServerInfo> servers, Map<String, ServerGroup> groups, ConfigSettings settings) {
+    /**
+     * The snapshot that is used before the configuration has been loaded.
+     */
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(Map.of(), Map.of(), ConfigSettings.DEFAULT);
+
+    /**
+     * Constructor for the ConfigSnapshot record.
+     * The maps are copied, so later changes to the passed maps are not visible in the snapshot.
+     */
+    public ConfigSnapshot {
+        servers = Map.copyOf(servers);
+        groups = Map.copyOf(groups);
+    }
+
+    /**
+     * This method compares the servers of this snapshot with the servers of an earlier snapshot.
+     *
+     * @param previous the earlier snapshot
+     * @return the servers that were added, removed or changed since the earlier snapshot
+     */
+    public Diff diff(ConfigSnapshot previous) {
+        Set<String> added = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, PteroServerInfo> entry : servers.entrySet()) {
+            PteroServerInfo before = previous.servers.get(entry.getKey());
+            if (before == null) {
+                added.add(entry.getKey());
+            } else if (!Objects.equals(before, entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        Set<String> removed = new HashSet<>(previous.servers.keySet());
+        removed.removeAll(servers.keySet());
+        return new Diff(Set.copyOf(added), Set.copyOf(removed), Set.copyOf(changed));
+    }
+
+    /**
+     * This record holds the difference of the servers of two snapshots.
+     *
+     * @param added the servers that are new
+     * @param removed the servers that are no longer configured
+     * @param changed the servers whose settings changed
+     */
+    public record Diff(Set<String> added, Set<String> removed, Set<String> changed) {
+        /**
+         * This method returns whether the servers of the snapshots are the same.
+         *
+         * @return true if no server was added, removed or changed, false otherwise
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+        }
+    }
+}
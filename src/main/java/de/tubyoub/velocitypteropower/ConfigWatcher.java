@@ -0,0 +1,216 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * This class reloads the configuration when the configuration file changes.
+ * A background thread watches the data directory and waits until the file has stayed unchanged for the debounce time,
+ * so an editor that saves in several steps causes one reload.
+ * The file is validated before it is applied, and if it contains errors, the previous configuration stays in effect.
+ * Reloads of the reload command go through the same validation, off the command thread.
+ */
+public class ConfigWatcher {
+    private static final String CONFIG_FILE = "config.yml";
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final Path dataDirectory;
+    private final Path configFile;
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder rejectedReloads = new LongAdder();
+    private volatile long appliedChecksum;
+    private Thread thread;
+    private WatchService watchService;
+
+    /**
+     * Constructor for the ConfigWatcher class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public ConfigWatcher(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.dataDirectory = plugin.getDataDirectory();
+        this.configFile = dataDirectory.resolve(CONFIG_FILE);
+        this.appliedChecksum = checksum();
+        plugin.getStatistics().register("config.reloads", reloads::sum);
+        plugin.getStatistics().register("config.rejectedReloads", rejectedReloads::sum);
+    }
+
+    /**
+     * This method starts watching the configuration file if the watcher is enabled, or stops it if it is disabled.
+     * A watcher that is already running is kept, so it can be called after every reload.
+     */
+    public synchronized void start() {
+        if (!configurationManager.isConfigWatcherEnabled()) {
+            stop();
+            return;
+        }
+        if (thread != null && thread.isAlive()) {
+            return;
+        }
+        try {
+            watchService = dataDirectory.getFileSystem().newWatchService();
+            dataDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("Could not watch the configuration file: " + e.getMessage());
+            return;
+        }
+        WatchService service = watchService;
+        thread = new Thread(() -> watch(service), "VelocityPteroPower-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching " + configFile + " for changes");
+    }
+
+    /**
+     * This method stops watching the configuration file.
+     */
+    public synchronized void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the config watcher: " + e.getMessage());
+            }
+            watchService = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * This method validates the configuration file and applies it if it has no errors.
+     * The file is read once, and the content that was validated is the content that is applied,
+     * so a change of the file in between can not skip the validation.
+     * The errors of a rejected file are logged, and the previous configuration stays in effect.
+     *
+     * @return true if the configuration was reloaded, false if it was rejected
+     */
+    public synchronized boolean reload() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(configFile);
+        } catch (IOException e) {
+            logger.error("Could not read the configuration file: " + e.getMessage());
+            rejectedReloads.increment();
+            return false;
+        }
+        List<String> problems = configurationManager.validate(new ByteArrayInputStream(content));
+        if (!problems.isEmpty()) {
+            logger.warn("The configuration was not reloaded, the previous configuration stays in effect:");
+            for (String problem : problems) {
+                logger.warn(" - " + problem);
+            }
+            rejectedReloads.increment();
+            return false;
+        }
+        byte[] applied = plugin.reloadConfig(content);
+        if (applied == null) {
+            rejectedReloads.increment();
+            return false;
+        }
+        // Loading the configuration may add missing options to the file, which must not trigger another reload.
+        // The checksum is taken from the applied content, so an edit after the file was read is still reloaded.
+        appliedChecksum = checksum(applied);
+        reloads.increment();
+        return true;
+    }
+
+    /**
+     * This method waits for changes of the configuration file and reloads it once the changes have settled.
+     * It runs until the watch service is closed.
+     */
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                if (!drain(service.take())) {
+                    continue;
+                }
+                WatchKey next;
+                while ((next = service.poll(Math.max(0, configurationManager.getConfigWatcherDebounce()), TimeUnit.MILLISECONDS)) != null) {
+                    drain(next);
+                }
+                if (checksum() != appliedChecksum) {
+                    logger.info("The configuration file changed, reloading");
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher was stopped.
+        }
+    }
+
+    /**
+     * This method consumes the events of a watch key.
+     *
+     * @return true if one of the events concerns the configuration file
+     */
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || configFile.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    private long checksum() {
+        try {
+            return checksum(Files.readAllBytes(configFile));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long checksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
@@ -35,10 +35,16 @@ import dev.dejvokep.boostedyaml.settings.loader.LoaderSettings;
 import dev.dejvokep.boostedyaml.settings.updater.UpdaterSettings;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -50,14 +56,9 @@ import java.util.Objects;
 public class ConfigurationManager {
     private Path dataDirectory;
     private YamlDocument config;
-    private String panelUrl;
-    private String apiKey;
-    private PanelType panel;
-    private boolean checkUpdate;
-    private int startupJoinDelay;
     private final VelocityPteroPower plugin;
     private final Logger logger;
-    private Map<String, PteroServerInfo> serverInfoMap;
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
 
      /**
      * Constructor for the ConfigurationManager class.
@@ -72,71 +73,88 @@ public class ConfigurationManager {
 
     /**
      * This method loads the configuration from a YAML file.
-     * It reads the configuration values and stores them in instance variables.
+     * If the file does not exist yet, it is created from the default configuration.
      */
     public void loadConfig(){
+        File file = new File(this.dataDirectory.toFile(), "config.yml");
         try {
-            config = YamlDocument.create(new File(this.dataDirectory.toFile(), "config.yml"),
+            if (!file.exists()) {
+                Files.createDirectories(this.dataDirectory);
+                try (InputStream defaults = Objects.requireNonNull(getClass().getResourceAsStream("/config.yml"))) {
+                    Files.copy(defaults, file.toPath());
+                }
+            }
+            loadConfig(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            logger.error("Error creating/loading configuration: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method loads the configuration from the content of the configuration file.
+     * The servers, groups and settings are all read before anything is applied,
+     * and the new snapshot is published in one step, so a value that fails to load keeps the previous configuration
+     * in effect instead of applying a part of the new one.
+     * Options that are missing in the content are added from the default configuration and written to the file.
+     *
+     * @param content the content of the configuration file, usually the content that was validated
+     * @return the content of the configuration file after loading, which differs from the passed content
+     *         if options were added, or null if the configuration could not be loaded
+     */
+    public byte[] loadConfig(byte[] content) {
+        YamlDocument document;
+        ConfigSnapshot loaded;
+        boolean updated;
+        try {
+            document = YamlDocument.create(new ByteArrayInputStream(content),
                     Objects.requireNonNull(getClass().getResourceAsStream("/config.yml")),
                     GeneralSettings.DEFAULT,
-                    LoaderSettings.builder().setAutoUpdate(true).build(),
+                    LoaderSettings.builder().setAutoUpdate(false).build(),
                     DumperSettings.DEFAULT,
                     UpdaterSettings.builder().setVersioning(new BasicVersioning("fileversion"))
                             .setOptionSorting(UpdaterSettings.OptionSorting.SORT_BY_DEFAULTS).build());
+            updated = document.update();
 
+            ConfigSettings settings = new ConfigSettings(document);
 
-            checkUpdate = (boolean) config.get("checkUpdate");
-
-            Section startupJoinSection = config.getSection("startupJoin");
-            Map<String, Object> startupJoin = new HashMap<>();
-            if (startupJoinSection != null) {
-                for (Object keyObj : startupJoinSection.getKeys()) {
-                    String key = (String) keyObj;
-                    Route route = Route.fromString(key);
-                    Object value = startupJoinSection.get(route);
-                    startupJoin.put(key, value);
-                }
-            }
-
-            startupJoinDelay = (int) startupJoin.get("joinDelay");
-
-            Section pterodactylSection = config.getSection("pterodactyl");
-            Map<String, Object> pterodactyl = new HashMap<>();
-            if (pterodactylSection != null) {
-                for (Object keyObj : pterodactylSection.getKeys()) {
-                    String key = (String) keyObj;
-                    Route route = Route.fromString(key);
-                    Object value = pterodactylSection.get(route);
-                    pterodactyl.put(key, value);
-                }
-            }
-            panelUrl = (String) pterodactyl.get("url");
-            if (!panelUrl.endsWith("/")) {
-                panelUrl += "/";
-            }
-            apiKey = (String) pterodactyl.get("apiKey");
-            panel = detectPanelType(apiKey);
-
-
-            Section serversSection = config.getSection("servers");
+            Map<String, PteroServerInfo> serverInfoMap = snapshot.servers();
+            Section serversSection = document.getSection("servers");
                 if (serversSection != null) {
-                    serverInfoMap = processServerSection(serversSection);
+                    serverInfoMap = processServerSection(serversSection, settings.startupJoinDelay);
                 } else {
                     logger.error("Servers section not found in configuration.");
                 }
-                } catch (IOException e) {
-                    logger.error("Error creating/loading configuration: " + e.getMessage());
-                }
-            }
+            Section groupsSection = document.getSection("groups");
+            Map<String, ServerGroup> serverGroups = groupsSection != null ? processGroupSection(groupsSection, serverInfoMap) : new HashMap<>();
+            loaded = new ConfigSnapshot(serverInfoMap, serverGroups, settings);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error creating/loading configuration, the previous configuration stays in effect: " + e.getMessage());
+            return null;
+        }
+        config = document;
+        snapshot = loaded;
+        if (!updated) {
+            return content;
+        }
+        byte[] updatedContent = document.dump().getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.write(new File(this.dataDirectory.toFile(), "config.yml").toPath(), updatedContent);
+            return updatedContent;
+        } catch (IOException e) {
+            logger.warn("Could not add the new options to the configuration file: " + e.getMessage());
+            return content;
+        }
+    }
 
     /**
      * This method processes the server section of the configuration.
      * It creates a map of server names to PteroServerInfo objects.
      *
      * @param serversSection the server section of the configuration
+     * @param startupJoinDelay the startup join delay of the configuration the servers belong to
      * @return a map of server names to PteroServerInfo objects
      */
-    public Map<String, PteroServerInfo> processServerSection(Section serversSection) {
+    public Map<String, PteroServerInfo> processServerSection(Section serversSection, int startupJoinDelay) {
             Map<String, PteroServerInfo> serverInfoMap = new HashMap<>();
             for (Object keyObj : serversSection.getKeys()) {
                 String key = (String) keyObj;
@@ -155,7 +173,8 @@ public class ConfigurationManager {
                         String id = (String) serverInfoData.get("id");
                         if (!Objects.equals(id, "1234abcd")){
                             int timeout = (int) serverInfoData.getOrDefault("timeout", -1);
-                            serverInfoMap.put(key, new PteroServerInfo(id, timeout, getStartupJoinDelay()));
+                            String node = (String) serverInfoData.get("node");
+                            serverInfoMap.put(key, new PteroServerInfo(id, timeout, startupJoinDelay, node));
                             logger.info("Registered Server: " + id + " successfully");
                         }
                     } catch (Exception e) {
@@ -166,25 +185,160 @@ public class ConfigurationManager {
             return serverInfoMap;
         }
 
-    private PanelType detectPanelType(String apiKey) {
-        if (apiKey.startsWith("ptlc_")) {
-            return PanelType.pterodactyl;
-        } else if (apiKey.startsWith("peli_")) {
-            return PanelType.pelican;
-        } else {
-            // Default to Pterodactyl if the prefix is not recognized
-            return PanelType.pterodactyl;
+    /**
+     * This method processes the group section of the configuration.
+     * It creates a map of group names to ServerGroup objects.
+     * Members that are not configured in the servers section are skipped.
+     *
+     * @param groupsSection the group section of the configuration
+     * @param serverInfoMap the configured servers
+     * @return a map of group names to ServerGroup objects
+     */
+    public Map<String, ServerGroup> processGroupSection(Section groupsSection, Map<String, PteroServerInfo> serverInfoMap) {
+        Map<String, ServerGroup> groups = new HashMap<>();
+        for (Object keyObj : groupsSection.getKeys()) {
+            String key = (String) keyObj;
+            Object groupDataObj = groupsSection.get(Route.fromString(key));
+            if (!(groupDataObj instanceof Section)) {
+                continue;
+            }
+            Section groupData = (Section) groupDataObj;
+            try {
+                List<String> members = new ArrayList<>();
+                for (String member : groupData.getStringList("servers")) {
+                    if (serverInfoMap.containsKey(member)) {
+                        members.add(member);
+                    } else {
+                        logger.warn("Server '" + member + "' of group '" + key + "' is not configured in the servers section.");
+                    }
+                }
+                groups.put(key, new ServerGroup(key, members,
+                        groupData.getInt("warmSpares", 1),
+                        groupData.getInt("maxPlayers", 16),
+                        groupData.getInt("scaleUpThreshold", 75),
+                        groupData.getInt("scaleDownThreshold", 25)));
+                logger.info("Registered Group: " + key + " with " + members.size() + " servers");
+            } catch (Exception e) {
+                logger.warn("Error processing group '" + key + "': " + e.getMessage());
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * This method checks a configuration without applying it.
+     * The document is parsed on its own, so the loaded configuration is not touched,
+     * and every value that is also in the default configuration must have the same type as its default,
+     * which are the values that would fail to load.
+     * The servers must have an ID and an integer timeout, and the panel URL and API key must be set.
+     *
+     * @param document the content of the configuration file
+     * @return the problems that were found, which is empty if the configuration can be applied
+     */
+    public List<String> validate(InputStream document) {
+        List<String> problems = new ArrayList<>();
+        YamlDocument candidate;
+        YamlDocument defaults;
+        try {
+            candidate = YamlDocument.create(document, GeneralSettings.DEFAULT, LoaderSettings.DEFAULT, DumperSettings.DEFAULT, UpdaterSettings.DEFAULT);
+            defaults = YamlDocument.create(Objects.requireNonNull(getClass().getResourceAsStream("/config.yml")),
+                    GeneralSettings.DEFAULT, LoaderSettings.DEFAULT, DumperSettings.DEFAULT, UpdaterSettings.DEFAULT);
+        } catch (IOException | RuntimeException e) {
+            problems.add("The file could not be parsed: " + e.getMessage());
+            return problems;
+        }
+
+        for (Object keyObj : defaults.getKeys()) {
+            String key = (String) keyObj;
+            if (!key.equals("servers") && !key.equals("groups")) {
+                validateType(key, defaults.get(key), candidate.get(key), problems);
+            }
+        }
+
+        Section pterodactylSection = candidate.getSection("pterodactyl");
+        if (pterodactylSection == null || !(pterodactylSection.get("url") instanceof String) || ((String) pterodactylSection.get("url")).isBlank()) {
+            problems.add("pterodactyl.url must be set");
         }
+        if (pterodactylSection == null || !(pterodactylSection.get("apiKey") instanceof String) || ((String) pterodactylSection.get("apiKey")).isBlank()) {
+            problems.add("pterodactyl.apiKey must be set");
+        }
+
+        Section serversSection = candidate.getSection("servers");
+        if (serversSection == null) {
+            problems.add("The servers section is missing");
+            return problems;
+        }
+        for (Object keyObj : serversSection.getKeys()) {
+            String key = (String) keyObj;
+            Object serverObj = serversSection.get(Route.fromString(key));
+            if (!(serverObj instanceof Section)) {
+                problems.add("servers." + key + " must be a section");
+                continue;
+            }
+            Section server = (Section) serverObj;
+            if (!(server.get("id") instanceof String)) {
+                problems.add("servers." + key + ".id must be set, quote IDs that only consist of digits");
+            }
+            Object timeout = server.get("timeout");
+            if (timeout != null && !(timeout instanceof Integer)) {
+                problems.add("servers." + key + ".timeout must be a whole number");
+            }
+            Object node = server.get("node");
+            if (node != null && !(node instanceof String)) {
+                problems.add("servers." + key + ".node must be a text");
+            }
+        }
+        return problems;
     }
 
+    /**
+     * This method checks that a value has the type of its default, and the values of a section recursively.
+     * Values that are missing are fine, since they are added from the defaults when the configuration is loaded.
+     */
+    private void validateType(String path, Object expected, Object actual, List<String> problems) {
+        if (actual == null || expected == null) {
+            return;
+        }
+        if (expected instanceof Section) {
+            if (!(actual instanceof Section)) {
+                problems.add(path + " must be a section");
+                return;
+            }
+            Section expectedSection = (Section) expected;
+            Section actualSection = (Section) actual;
+            for (Object keyObj : expectedSection.getKeys()) {
+                String key = (String) keyObj;
+                Route route = Route.fromString(key);
+                validateType(path + "." + key, expectedSection.get(route), actualSection.get(route), problems);
+            }
+        } else if (expected instanceof List) {
+            if (!(actual instanceof List)) {
+                problems.add(path + " must be a list");
+            }
+        } else if (!expected.getClass().isInstance(actual)) {
+            problems.add(path + " must be a " + (expected instanceof Integer ? "whole number" : expected instanceof Boolean ? "true or false" : "text"));
+        }
+    }
+
+    /**
+     * This method returns the servers, groups and settings of the current configuration.
+     * The snapshot is replaced as a whole when the configuration is reloaded,
+     * so callers that need several lookups to agree should read it once.
+     *
+     * @return the current configuration snapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
 
     /**
      * This method returns the map of server names to PteroServerInfo objects.
+     * The map is immutable and belongs to the current snapshot.
      *
      * @return the map of server names to PteroServerInfo objects
      */
     public Map<String, PteroServerInfo> getServerInfoMap() {
-        return serverInfoMap;
+        return snapshot.servers();
     }
 
     /**
@@ -193,7 +347,7 @@ public class ConfigurationManager {
      * @return the Pterodactyl URL
      */
     public String getPterodactylUrl() {
-        return panelUrl;
+        return snapshot.settings().panelUrl;
     }
 
     /**
@@ -202,7 +356,7 @@ public class ConfigurationManager {
      * @return the Pterodactyl API key
      */
     public String getPterodactylApiKey() {
-        return apiKey;
+        return snapshot.settings().apiKey;
     }
 
     /**
@@ -211,7 +365,7 @@ public class ConfigurationManager {
      * @return true if updates should be checked, false otherwise
      */
     public boolean isCheckUpdate() {
-        return checkUpdate;
+        return snapshot.settings().checkUpdate;
     }
 
     /**
@@ -220,10 +374,423 @@ public class ConfigurationManager {
      * @return the startup join delay
      */
     public int getStartupJoinDelay() {
-        return startupJoinDelay;
+        return snapshot.settings().startupJoinDelay;
+    }
+
+    /**
+     * This method returns how many waiting players are connected at once when a started server is running.
+     *
+     * @return the connect batch size
+     */
+    public int getConnectBatchSize() {
+        return snapshot.settings().connectBatchSize;
+    }
+
+    /**
+     * This method returns the interval in milliseconds between two batches of connecting players.
+     *
+     * @return the connect batch interval
+     */
+    public int getConnectBatchInterval() {
+        return snapshot.settings().connectBatchInterval;
+    }
+
+    /**
+     * This method returns whether the readiness checks are scheduled from the learned startup durations.
+     *
+     * @return true if adaptive polling is enabled, false otherwise
+     */
+    public boolean isAdaptivePolling() {
+        return snapshot.settings().adaptivePolling;
+    }
+
+    /**
+     * This method returns the checks that have to succeed before a starting server counts as ready.
+     *
+     * @return the readiness mode
+     */
+    public ReadinessMode getReadinessMode() {
+        return snapshot.settings().readinessMode;
+    }
+
+    /**
+     * This method returns the timeout in milliseconds of the ping that checks if a starting server accepts logins.
+     *
+     * @return the ping timeout
+     */
+    public int getPingTimeout() {
+        return snapshot.settings().pingTimeout;
     }
 
     public PanelType getPanelType(){
-        return panel;
+        return snapshot.settings().panel;
+    }
+
+    /**
+     * This method returns the timeout in seconds for opening a connection to the panel.
+     *
+     * @return the connect timeout in seconds
+     */
+    public int getConnectTimeout() {
+        return snapshot.settings().connectTimeout;
+    }
+
+    /**
+     * This method returns the timeout in seconds for a single panel request.
+     *
+     * @return the request timeout in seconds
+     */
+    public int getRequestTimeout() {
+        return snapshot.settings().requestTimeout;
+    }
+
+    /**
+     * This method returns the maximum number of threads used for panel requests.
+     *
+     * @return the number of panel threads
+     */
+    public int getPanelThreads() {
+        return snapshot.settings().panelThreads;
+    }
+
+    /**
+     * This method returns the time in seconds a cached server state is considered fresh.
+     *
+     * @return the cache TTL in seconds
+     */
+    public int getCacheTtl() {
+        return snapshot.settings().cacheTtl;
+    }
+
+    /**
+     * This method returns the time in seconds after which a cached server state is no longer served.
+     *
+     * @return the maximum age of a cached state in seconds
+     */
+    public int getCacheMaxAge() {
+        return snapshot.settings().cacheMaxAge;
+    }
+
+    /**
+     * This method returns the interval in seconds in which stale cached states are refreshed.
+     *
+     * @return the refresh interval in seconds, or a negative value if the background refresh is disabled
+     */
+    public int getCacheRefreshInterval() {
+        return snapshot.settings().cacheRefreshInterval;
+    }
+
+    /**
+     * This method returns whether the background refresh reads the states of all servers with the server list of the panel.
+     *
+     * @return true if the bulk refresh is enabled, false otherwise
+     */
+    public boolean isCacheBulkRefresh() {
+        return snapshot.settings().cacheBulkRefresh;
+    }
+
+    /**
+     * This method returns the amount of requests per minute the plugin may send to the panel.
+     *
+     * @return the requests per minute
+     */
+    public int getRequestsPerMinute() {
+        return snapshot.settings().requestsPerMinute;
+    }
+
+    /**
+     * This method returns the percentage of the request budget that is reserved for players and commands.
+     *
+     * @return the interactive reserve in percent
+     */
+    public int getInteractiveReserve() {
+        return snapshot.settings().interactiveReserve;
+    }
+
+    /**
+     * This method returns how often a failed panel request is retried.
+     *
+     * @return the maximum amount of retries
+     */
+    public int getMaxRetries() {
+        return snapshot.settings().maxRetries;
+    }
+
+    /**
+     * This method returns the delay in milliseconds before the first retry of a failed panel request.
+     *
+     * @return the retry delay in milliseconds
+     */
+    public int getRetryDelay() {
+        return snapshot.settings().retryDelay;
+    }
+
+    /**
+     * This method returns the amount of failed requests in a row after which the panel is considered unavailable.
+     *
+     * @return the failure threshold
+     */
+    public int getFailureThreshold() {
+        return snapshot.settings().failureThreshold;
+    }
+
+    /**
+     * This method returns the time in seconds requests are paused after the panel was considered unavailable.
+     *
+     * @return the open duration of the circuit breaker in seconds
+     */
+    public int getCircuitOpenDuration() {
+        return snapshot.settings().circuitOpenDuration;
+    }
+
+    /**
+     * This method returns whether server states are received through the websocket of the servers.
+     *
+     * @return true if the websocket is enabled, false otherwise
+     */
+    public boolean isWebsocketEnabled() {
+        return snapshot.settings().websocketEnabled;
+    }
+
+    /**
+     * This method returns the time in seconds an unused websocket connection is kept open.
+     *
+     * @return the websocket idle timeout in seconds
+     */
+    public int getWebsocketIdleTimeout() {
+        return snapshot.settings().websocketIdleTimeout;
+    }
+
+    /**
+     * This method returns the map of group names to ServerGroup objects.
+     *
+     * @return the map of group names to ServerGroup objects
+     */
+    public Map<String, ServerGroup> getServerGroups() {
+        return snapshot.groups();
+    }
+
+    /**
+     * This method returns whether a start limit is configured for a single panel node.
+     *
+     * @param node the name of the node
+     * @return true if the node has its own limit, false if it uses the global limit
+     */
+    public boolean hasNodeStartLimit(String node) {
+        return snapshot.settings().nodeStartLimits.containsKey(node);
+    }
+
+    /**
+     * This method returns how many servers of a panel node may start at the same time.
+     * Nodes without their own limit use the global limit.
+     *
+     * @param node the name of the node
+     * @return the maximum amount of concurrent starts, or 0 if the starts are not limited
+     */
+    public int getMaxConcurrentStarts(String node) {
+        ConfigSettings settings = snapshot.settings();
+        return settings.nodeStartLimits.getOrDefault(node, settings.maxConcurrentStarts);
+    }
+
+    /**
+     * This method returns the time in seconds after which a start no longer counts against the limit,
+     * even if the server has not reported that it is running.
+     *
+     * @return the start slot timeout
+     */
+    public int getStartSlotTimeout() {
+        return snapshot.settings().startSlotTimeout;
+    }
+
+    /**
+     * This method returns the console commands that are sent to a server before it is stopped.
+     *
+     * @return the pre-stop commands
+     */
+    public List<String> getPreStopCommands() {
+        return snapshot.settings().preStopCommands;
+    }
+
+    /**
+     * This method returns the time in seconds to wait after the pre-stop commands before the server is stopped.
+     *
+     * @return the pre-stop delay
+     */
+    public int getPreStopDelay() {
+        return snapshot.settings().preStopDelay;
+    }
+
+    /**
+     * This method returns the time in seconds after which a server that does not stop is killed.
+     *
+     * @return the kill timeout, or 0 or less if servers are never killed
+     */
+    public int getKillTimeout() {
+        return snapshot.settings().killTimeout;
+    }
+
+    /**
+     * This method returns whether the idle timeout of servers that are often started again shortly after being stopped is extended.
+     *
+     * @return true if the anti-flap extension is enabled, false otherwise
+     */
+    public boolean isAntiFlapEnabled() {
+        return snapshot.settings().antiFlapEnabled;
+    }
+
+    /**
+     * This method returns the time in seconds after a stop within which a start counts as a revisit.
+     *
+     * @return the flap window
+     */
+    public int getAntiFlapWindow() {
+        return snapshot.settings().antiFlapWindow;
+    }
+
+    /**
+     * This method returns the factor by which the idle timeout of a server that is always revisited is extended at most.
+     *
+     * @return the maximum extension factor
+     */
+    public int getAntiFlapMaxFactor() {
+        return snapshot.settings().antiFlapMaxFactor;
+    }
+
+    /**
+     * This method returns whether empty servers are stopped early when their node exceeds its memory budget.
+     *
+     * @return true if the memory budgets are enabled, false otherwise
+     */
+    public boolean isMemoryPressureEnabled() {
+        return snapshot.settings().memoryPressureEnabled;
+    }
+
+    /**
+     * This method returns the interval in seconds in which the resource usage of the servers is sampled.
+     *
+     * @return the sample interval
+     */
+    public int getMemorySampleInterval() {
+        return snapshot.settings().memorySampleInterval;
+    }
+
+    /**
+     * This method returns the memory budget of a panel node in megabytes.
+     * Nodes without their own budget use the global budget.
+     *
+     * @param node the name of the node
+     * @return the memory budget, or 0 if the memory of the node is not limited
+     */
+    public int getNodeMemoryBudget(String node) {
+        ConfigSettings settings = snapshot.settings();
+        return settings.nodeMemoryBudgets.getOrDefault(node, settings.maxNodeMemory);
+    }
+
+    /**
+     * This method returns whether the configuration is reloaded when the configuration file changes.
+     *
+     * @return true if the config watcher is enabled, false otherwise
+     */
+    public boolean isConfigWatcherEnabled() {
+        return snapshot.settings().configWatcherEnabled;
+    }
+
+    /**
+     * This method returns the time in milliseconds the configuration file has to stay unchanged before it is reloaded.
+     *
+     * @return the debounce time
+     */
+    public int getConfigWatcherDebounce() {
+        return snapshot.settings().configWatcherDebounce;
+    }
+
+    /**
+     * This method returns whether players are held in the limbo server while their server starts.
+     *
+     * @return true if the holding mode is enabled, false otherwise
+     */
+    public boolean isLimboEnabled() {
+        return snapshot.settings().limboEnabled;
+    }
+
+    /**
+     * This method returns the name of the limbo server players are held in.
+     *
+     * @return the name of the limbo server
+     */
+    public String getLimboServer() {
+        return snapshot.settings().limboServer;
+    }
+
+    /**
+     * This method returns the interval in seconds in which the held players are shown the status of their server.
+     *
+     * @return the limbo update interval
+     */
+    public int getLimboUpdateInterval() {
+        return snapshot.settings().limboUpdateInterval;
+    }
+
+    /**
+     * This method returns whether the last server of a player is started when the player logs in.
+     *
+     * @return true if predictive starts are enabled, false otherwise
+     */
+    public boolean isPredictiveStartEnabled() {
+        return snapshot.settings().predictiveStartEnabled;
+    }
+
+    /**
+     * This method returns how many players the last server is remembered for.
+     *
+     * @return the maximum amount of players in the destination store
+     */
+    public int getPredictiveStartMaxPlayers() {
+        return snapshot.settings().predictiveStartMaxPlayers;
+    }
+
+    /**
+     * This method returns the time in seconds a predicted server gets before its usual timeout applies, if the player does not join it.
+     *
+     * @return the predictive start grace period
+     */
+    public int getPredictiveStartGracePeriod() {
+        return snapshot.settings().predictiveStartGracePeriod;
+    }
+
+    /**
+     * This method returns whether servers are started ahead of the demand expected from the join history.
+     *
+     * @return true if pre-warming is enabled, false otherwise
+     */
+    public boolean isPrewarmEnabled() {
+        return snapshot.settings().prewarmEnabled;
+    }
+
+    /**
+     * This method returns how many minutes before the expected demand a server is started.
+     *
+     * @return the pre-warm lead time in minutes
+     */
+    public int getPrewarmLeadTime() {
+        return snapshot.settings().prewarmLeadTime;
+    }
+
+    /**
+     * This method returns how many joins per week a time slot needs before the server is pre-warmed for it.
+     *
+     * @return the minimum amount of joins
+     */
+    public int getPrewarmMinJoins() {
+        return snapshot.settings().prewarmMinJoins;
+    }
+
+    /**
+     * This method returns how many servers may be pre-warmed at the same time.
+     *
+     * @return the maximum amount of pre-warmed servers
+     */
+    public int getPrewarmMaxServers() {
+        return snapshot.settings().prewarmMaxServers;
     }
 }
\ No newline at end of file
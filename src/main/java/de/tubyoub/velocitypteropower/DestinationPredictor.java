@@ -0,0 +1,303 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.api.RequestPriority;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class starts the server a returning player is expected to join while the player is still logging in.
+ * The last configured server of every player is kept in a store that evicts the least recently used players,
+ * so it stays small even with many unique players, and is persisted in the data directory.
+ * When a player logs in, the last server of the player is started if it is offline.
+ */
+public class DestinationPredictor {
+    private static final String STORE_FILE = "destinations.dat";
+    private static final int STORE_VERSION = 1;
+    private static final long SAVE_INTERVAL = 5;
+    private static final long CHECK_INTERVAL = 5;
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final Path storeFile;
+    private final Object saveLock = new Object();
+    private final Map<UUID, String> destinations = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+            return size() > Math.max(1, configurationManager.getPredictiveStartMaxPlayers());
+        }
+    };
+    private final LongAdder predictedStarts = new LongAdder();
+    private boolean dirty;
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the DestinationPredictor class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public DestinationPredictor(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.storeFile = plugin.getDataDirectory().resolve(STORE_FILE);
+        plugin.getStatistics().register("predictiveStart.starts", predictedStarts::sum);
+        plugin.getStatistics().register("predictiveStart.players", this::size);
+    }
+
+    /**
+     * This method loads the store and starts the task that saves it periodically.
+     * If the task is already running, it is restarted.
+     */
+    public synchronized void start() {
+        stopTask();
+        if (destinations.isEmpty()) {
+            load();
+        }
+        task = plugin.getProxyServer().getScheduler().buildTask(plugin, () -> {
+            if (isDirty()) {
+                save();
+            }
+        }).delay(SAVE_INTERVAL, TimeUnit.MINUTES).repeat(SAVE_INTERVAL, TimeUnit.MINUTES).schedule();
+    }
+
+    /**
+     * This method stops the task and saves the store.
+     */
+    public void stop() {
+        synchronized (this) {
+            stopTask();
+        }
+        save();
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method is called after a player has logged in.
+     * If the player has a known last server that is offline, the server is started.
+     *
+     * @param event the post login event
+     */
+    @Subscribe
+    public void onPostLogin(PostLoginEvent event) {
+        if (!configurationManager.isPredictiveStartEnabled()) {
+            return;
+        }
+        String serverName;
+        synchronized (this) {
+            serverName = destinations.get(event.getPlayer().getUniqueId());
+        }
+        PteroServerInfo serverInfo = serverName != null ? configurationManager.getServerInfoMap().get(serverName) : null;
+        if (serverInfo == null) {
+            return;
+        }
+        plugin.getAPIClient().getServerStateAsync(serverInfo.getServerId(), RequestPriority.BACKGROUND).thenAccept(state -> {
+            if (state != ServerState.OFFLINE) {
+                return;
+            }
+            plugin.getStartScheduler().submit(serverName, () -> 0, position -> { }, () -> {
+                logger.info("Starting server " + serverName + ", the last server of " + event.getPlayer().getUsername());
+                predictedStarts.increment();
+                plugin.getAPIClient().powerServerAsync(serverInfo.getServerId(), "start").exceptionally(throwable -> {
+                    logger.error("Error powering server.", throwable);
+                    return null;
+                });
+                if (serverInfo.getTimeout() >= 0) {
+                    awaitRunning(serverName, serverInfo, System.nanoTime());
+                }
+            });
+        }).exceptionally(throwable -> {
+            logger.warn("Could not start the last server of " + event.getPlayer().getUsername() + ": " + throwable.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * This method waits until a predicted server is running and then schedules its shutdown,
+     * so the grace period counts from the moment the player could join and a slow start does not use it up.
+     * If the player joins the server or the server is queued for waiting players in the meantime,
+     * the shutdown is left to the usual handling.
+     * A server that does not report running within the start timeout gets its deadline anyway, so it is not kept forever.
+     */
+    private void awaitRunning(String serverName, PteroServerInfo serverInfo, long startedAt) {
+        Executor delay = CompletableFuture.delayedExecutor(CHECK_INTERVAL, TimeUnit.SECONDS);
+        CompletableFuture.runAsync(() -> { }, delay)
+                .thenCompose(ignored -> plugin.getAPIClient().getServerStateAsync(serverInfo.getServerId(), RequestPriority.BACKGROUND))
+                .whenComplete((state, throwable) -> {
+                    if (!plugin.getOccupancyTracker().isEmpty(serverName) || plugin.getStartupCoordinator().isStarting(serverName)) {
+                        return;
+                    }
+                    long timeout = TimeUnit.SECONDS.toNanos(configurationManager.getStartSlotTimeout());
+                    if (state == ServerState.RUNNING || System.nanoTime() - startedAt > timeout) {
+                        if (!plugin.getIdleTracker().isArmed(serverName)) {
+                            plugin.scheduleServerShutdown(serverName, serverInfo.getServerId(), configurationManager.getPredictiveStartGracePeriod() + serverInfo.getTimeout());
+                        }
+                        return;
+                    }
+                    awaitRunning(serverName, serverInfo, startedAt);
+                });
+    }
+
+    /**
+     * This method is called when a player has connected to a server.
+     * If the server is configured, it is stored as the last server of the player.
+     *
+     * @param event the server connected event
+     */
+    @Subscribe
+    public void onServerConnected(ServerConnectedEvent event) {
+        String serverName = event.getServer().getServerInfo().getName();
+        if (!configurationManager.getServerInfoMap().containsKey(serverName)) {
+            return;
+        }
+        synchronized (this) {
+            destinations.put(event.getPlayer().getUniqueId(), serverName);
+            dirty = true;
+        }
+    }
+
+    private synchronized long size() {
+        return destinations.size();
+    }
+
+    private synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * This method loads the store, the least recently used players first, so the access order is kept.
+     */
+    private synchronized void load() {
+        if (!Files.exists(storeFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(storeFile)))) {
+            if (in.readInt() != STORE_VERSION) {
+                logger.warn("Unknown version of the destination store, starting with an empty store");
+                return;
+            }
+            String[] serverNames = new String[in.readInt()];
+            for (int i = 0; i < serverNames.length; i++) {
+                serverNames[i] = in.readUTF();
+            }
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                destinations.put(uuid, serverNames[in.readUnsignedShort()]);
+            }
+            logger.info("Loaded the last servers of " + destinations.size() + " players");
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load the destination store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method saves the store in a compact binary format.
+     * Every server name is written once, the entries only refer to its index.
+     * The entries are copied under the lock and written outside of it, so login and connect events never wait for the disk.
+     * The store is written to a temporary file first, so a crash never leaves a broken store behind.
+     */
+    private void save() {
+        synchronized (saveLock) {
+            List<String> serverNames = new ArrayList<>();
+            long[] mostSignificantBits;
+            long[] leastSignificantBits;
+            short[] indexes;
+            synchronized (this) {
+                dirty = false;
+                Map<String, Integer> serverIndexes = new HashMap<>();
+                mostSignificantBits = new long[destinations.size()];
+                leastSignificantBits = new long[destinations.size()];
+                indexes = new short[destinations.size()];
+                int i = 0;
+                for (Map.Entry<UUID, String> entry : destinations.entrySet()) {
+                    int index = serverIndexes.computeIfAbsent(entry.getValue(), name -> {
+                        serverNames.add(name);
+                        return serverNames.size() - 1;
+                    });
+                    mostSignificantBits[i] = entry.getKey().getMostSignificantBits();
+                    leastSignificantBits[i] = entry.getKey().getLeastSignificantBits();
+                    indexes[i] = (short) index;
+                    i++;
+                }
+            }
+            Path temporaryFile = storeFile.resolveSibling(STORE_FILE + ".tmp");
+            try {
+                Files.createDirectories(storeFile.getParent());
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                    out.writeInt(STORE_VERSION);
+                    out.writeInt(serverNames.size());
+                    for (String serverName : serverNames) {
+                        out.writeUTF(serverName);
+                    }
+                    out.writeInt(indexes.length);
+                    for (int i = 0; i < indexes.length; i++) {
+                        out.writeLong(mostSignificantBits[i]);
+                        out.writeLong(leastSignificantBits[i]);
+                        out.writeShort(indexes[i]);
+                    }
+                }
+                Files.move(temporaryFile, storeFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                logger.warn("Could not save the destination store: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records a distribution of durations in buckets with exponentially growing bounds.
+ * Bucket i holds the durations from 2^(i-1) to 2^i milliseconds, so percentiles are accurate to a factor of two
+ * while the histogram needs a fixed, small amount of memory.
+ */
+public class DurationHistogram {
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * This method records a duration.
+     *
+     * @param durationMillis the duration in milliseconds
+     */
+    public void record(long durationMillis) {
+        long duration = Math.max(0, durationMillis);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        max.accumulate(duration);
+    }
+
+    /**
+     * This method returns the amount of recorded durations.
+     *
+     * @return the amount of durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * This method returns the longest recorded duration.
+     *
+     * @return the longest duration in milliseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * This method returns the upper bound of the bucket that contains the given percentile.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the duration in milliseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(getMax(), i == 0 ? 0 : 1L << i);
+            }
+        }
+        return getMax();
+    }
+}
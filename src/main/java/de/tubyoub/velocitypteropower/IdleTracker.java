@@ -0,0 +1,282 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class stops servers that stayed empty until their timeout through the {@link ShutdownPipeline}.
+ * It holds exactly one shutdown deadline per server in a hierarchical timing wheel with a resolution of one second:
+ * a player joining cancels the deadline, the last player leaving arms it again.
+ * Arming and cancelling a deadline take constant time, and a single task advances the wheel,
+ * instead of one scheduled task per disconnect that is never cancelled.
+ */
+public class IdleTracker {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TIMEOUT = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final Deadline[][] wheels = new Deadline[LEVELS][WHEEL_SIZE];
+    private final Map<String, Deadline> deadlines = new HashMap<>();
+    private final LongAdder expiredDeadlines = new LongAdder();
+    private final LongAdder cancelledDeadlines = new LongAdder();
+    private long startedAt;
+    private long currentTick;
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the IdleTracker class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public IdleTracker(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        plugin.getStatistics().register("idle.pendingDeadlines", this::getPendingDeadlines);
+        plugin.getStatistics().register("idle.expiredDeadlines", expiredDeadlines::sum);
+        plugin.getStatistics().register("idle.cancelledDeadlines", cancelledDeadlines::sum);
+    }
+
+    /**
+     * This method starts the task that advances the wheel every second.
+     */
+    public synchronized void start() {
+        if (task != null) {
+            return;
+        }
+        startedAt = System.nanoTime();
+        currentTick = 0;
+        task = plugin.getProxyServer().getScheduler().buildTask(plugin, this::advance)
+                .delay(1, TimeUnit.SECONDS)
+                .repeat(1, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the task and drops all deadlines.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (Deadline[] wheel : wheels) {
+            Arrays.fill(wheel, null);
+        }
+        deadlines.clear();
+    }
+
+    /**
+     * This method arms the shutdown deadline of a server.
+     * An existing deadline of the server is replaced, so every server has at most one deadline.
+     *
+     * @param serverName the name of the server
+     * @param serverId the ID of the server
+     * @param timeout the configured time in seconds after which the server is stopped if it is still empty, a negative timeout arms nothing
+     * @param extendedTimeout the time in seconds after which the server is actually stopped, which is at least the configured timeout
+     */
+    public synchronized void arm(String serverName, String serverId, int timeout, int extendedTimeout) {
+        if (timeout < 0) {
+            return;
+        }
+        Deadline previous = deadlines.remove(serverName);
+        if (previous != null) {
+            unlink(previous);
+        }
+        long baseExpiry = currentTick + Math.max(1, Math.min(timeout, MAX_TIMEOUT));
+        long expiry = currentTick + Math.max(1, Math.min(Math.max(timeout, extendedTimeout), MAX_TIMEOUT));
+        Deadline deadline = new Deadline(serverName, serverId, baseExpiry, expiry);
+        deadlines.put(serverName, deadline);
+        insert(deadline);
+    }
+
+    /**
+     * This method cancels the shutdown deadline of a server, for example because a player joined it.
+     *
+     * @param serverName the name of the server
+     */
+    public synchronized void cancel(String serverName) {
+        Deadline deadline = deadlines.remove(serverName);
+        if (deadline != null) {
+            unlink(deadline);
+            cancelledDeadlines.increment();
+            if (deadline.expiry > deadline.baseExpiry && currentTick >= deadline.baseExpiry) {
+                plugin.getAntiFlapPolicy().onColdStartAvoided(serverName);
+            }
+        }
+    }
+
+    /**
+     * This method removes the shutdown deadline of a server that is stopped ahead of it.
+     * Unlike cancelling, this is not counted as a cancelled deadline or as a cold start avoided,
+     * since the server is stopped instead of being kept up.
+     *
+     * @param serverName the name of the server
+     */
+    public synchronized void discard(String serverName) {
+        Deadline deadline = deadlines.remove(serverName);
+        if (deadline != null) {
+            unlink(deadline);
+        }
+    }
+
+    /**
+     * This method returns whether a server has a pending shutdown deadline.
+     *
+     * @param serverName the name of the server
+     * @return true if a deadline is pending, false otherwise
+     */
+    public synchronized boolean isArmed(String serverName) {
+        return deadlines.containsKey(serverName);
+    }
+
+    private synchronized long getPendingDeadlines() {
+        return deadlines.size();
+    }
+
+    /**
+     * This method advances the wheel to the current second and stops the servers whose deadline expired.
+     * If the task ran late, the missed ticks are caught up.
+     * The servers are checked and stopped outside of the lock.
+     */
+    private void advance() {
+        List<Deadline> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt);
+            while (currentTick < targetTick) {
+                currentTick++;
+                for (int level = 1; level < LEVELS; level++) {
+                    if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                        break;
+                    }
+                    cascade(level, (int) ((currentTick >> (WHEEL_BITS * level)) & WHEEL_MASK));
+                }
+                int slot = (int) (currentTick & WHEEL_MASK);
+                Deadline deadline = wheels[0][slot];
+                wheels[0][slot] = null;
+                while (deadline != null) {
+                    Deadline next = deadline.next;
+                    deadline.previous = null;
+                    deadline.next = null;
+                    deadlines.remove(deadline.serverName, deadline);
+                    expired.add(deadline);
+                    deadline = next;
+                }
+            }
+        }
+        for (Deadline deadline : expired) {
+            expiredDeadlines.increment();
+            expire(deadline);
+        }
+    }
+
+    private void expire(Deadline deadline) {
+        plugin.getShutdownPipeline().stop(deadline.serverName, deadline.serverId, true);
+    }
+
+    /**
+     * This method moves the deadlines of a slot of a higher level into the lower levels.
+     */
+    private void cascade(int level, int slot) {
+        Deadline deadline = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (deadline != null) {
+            Deadline next = deadline.next;
+            deadline.previous = null;
+            deadline.next = null;
+            insert(deadline);
+            deadline = next;
+        }
+    }
+
+    /**
+     * This method puts a deadline into the slot of the lowest level that covers its remaining time.
+     */
+    private void insert(Deadline deadline) {
+        long expiry = Math.max(deadline.expiry, currentTick);
+        long remaining = expiry - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && remaining >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((expiry >> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Deadline head = wheels[level][slot];
+        deadline.level = level;
+        deadline.slot = slot;
+        deadline.next = head;
+        if (head != null) {
+            head.previous = deadline;
+        }
+        wheels[level][slot] = deadline;
+    }
+
+    private void unlink(Deadline deadline) {
+        if (deadline.previous != null) {
+            deadline.previous.next = deadline.next;
+        } else if (wheels[deadline.level][deadline.slot] == deadline) {
+            wheels[deadline.level][deadline.slot] = deadline.next;
+        }
+        if (deadline.next != null) {
+            deadline.next.previous = deadline.previous;
+        }
+        deadline.previous = null;
+        deadline.next = null;
+    }
+
+    /**
+     * This class holds the shutdown deadline of a server as an entry of a slot list.
+     */
+    private static final class Deadline {
+        private final String serverName;
+        private final String serverId;
+        private final long baseExpiry;
+        private final long expiry;
+        private int level;
+        private int slot;
+        private Deadline previous;
+        private Deadline next;
+
+        private Deadline(String serverName, String serverId, long baseExpiry, long expiry) {
+            this.serverName = serverName;
+            this.serverId = serverId;
+            this.baseExpiry = baseExpiry;
+            this.expiry = expiry;
+        }
+    }
+}
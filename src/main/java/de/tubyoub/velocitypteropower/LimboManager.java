@@ -0,0 +1,160 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds players in a limbo server while the server they want to join is starting.
+ * Instead of denying the connection, the player is sent to the limbo server,
+ * sees the queue position and the expected time until the server is ready in the action bar,
+ * and is moved automatically once the server is ready.
+ * Players without a current server are no longer kicked, and the proxy does not see them disconnect and reconnect.
+ */
+public class LimboManager {
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ProxyServer proxyServer;
+    private final ConfigurationManager configurationManager;
+    private final LongAdder playersHeldTotal = new LongAdder();
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the LimboManager class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public LimboManager(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.proxyServer = plugin.getProxyServer();
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("limbo.playersHeldTotal", playersHeldTotal::sum);
+    }
+
+    /**
+     * This method starts the task that shows the status to the held players.
+     * If the task is already running, it is restarted.
+     */
+    public synchronized void start() {
+        stop();
+        if (!configurationManager.isLimboEnabled()) {
+            return;
+        }
+        if (getLimboServer().isEmpty()) {
+            logger.warn("Limbo server '" + configurationManager.getLimboServer() + "' is not registered in Velocity, players will not be held.");
+        }
+        long interval = Math.max(1, configurationManager.getLimboUpdateInterval());
+        task = proxyServer.getScheduler().buildTask(plugin, this::showStatus)
+                .delay(interval, TimeUnit.SECONDS)
+                .repeat(interval, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the task that shows the status to the held players.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method holds a player whose target server is not running.
+     * If the holding mode is enabled, the connection is redirected to the limbo server,
+     * or denied if the player already is on the limbo server.
+     * Otherwise the connection is denied as usual.
+     *
+     * @param event the server pre-connect event of the player
+     * @param player the player that is connecting
+     */
+    public void hold(ServerPreConnectEvent event, Player player) {
+        Optional<RegisteredServer> limbo = configurationManager.isLimboEnabled() ? getLimboServer() : Optional.empty();
+        if (limbo.isEmpty() || isInLimbo(player)) {
+            event.setResult(ServerPreConnectEvent.ServerResult.denied());
+            return;
+        }
+        playersHeldTotal.increment();
+        event.setResult(ServerPreConnectEvent.ServerResult.allowed(limbo.get()));
+    }
+
+    /**
+     * This method shows every player in the limbo server the status of the server they wait for.
+     */
+    private void showStatus() {
+        for (String serverName : plugin.getStartupCoordinator().getStartingServers()) {
+            List<Player> players = plugin.getStartupCoordinator().getWaitingPlayers(serverName);
+            Component status = getStatus(serverName);
+            for (int i = 0; i < players.size(); i++) {
+                Player player = players.get(i);
+                if (isInLimbo(player)) {
+                    player.sendActionBar(status.append(Component.text(" - you are " + (i + 1) + " of " + players.size(), NamedTextColor.GRAY)));
+                }
+            }
+        }
+    }
+
+    /**
+     * This method builds the status of a starting server with its start queue position and the expected time until it is ready.
+     */
+    private Component getStatus(String serverName) {
+        int position = plugin.getStartScheduler().getQueuePosition(serverName);
+        OptionalLong estimate = plugin.getStartupCoordinator().getEstimatedTimeToReady(serverName);
+        String text = position > 0
+                ? serverName + " is waiting to start, position " + position + " in the start queue"
+                : serverName + " is starting";
+        if (estimate.isPresent()) {
+            text += ", ready in about " + Math.max(1, TimeUnit.MILLISECONDS.toSeconds(estimate.getAsLong())) + "s";
+        }
+        return Component.text(text, TextColor.color(66,135,245));
+    }
+
+    private boolean isInLimbo(Player player) {
+        Optional<ServerConnection> currentServer = player.getCurrentServer();
+        return currentServer.isPresent() && currentServer.get().getServerInfo().getName().equals(configurationManager.getLimboServer());
+    }
+
+    private Optional<RegisteredServer> getLimboServer() {
+        return proxyServer.getServer(configurationManager.getLimboServer());
+    }
+}
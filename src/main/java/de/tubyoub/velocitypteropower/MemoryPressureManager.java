@@ -0,0 +1,246 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.api.RequestPriority;
+import de.tubyoub.velocitypteropower.api.ServerResources;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps the memory used by the servers of every panel node within a configured budget.
+ * It samples the memory and CPU usage of the servers that may be up from the resources endpoint of the panel in a fixed interval.
+ * If the servers of a node use more memory than the budget of the node, the empty servers holding the most memory
+ * are stopped ahead of their timeout until the node is within its budget again,
+ * which frees capacity for the servers players are trying to start.
+ */
+public class MemoryPressureManager {
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final Map<String, ServerResources> samples = new ConcurrentHashMap<>();
+    private final LongAdder pressureStops = new LongAdder();
+    private final AtomicBoolean sampling = new AtomicBoolean();
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the MemoryPressureManager class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public MemoryPressureManager(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("memoryPressure.sampledMegabytes", this::getSampledMegabytes);
+        plugin.getStatistics().register("memoryPressure.stops", pressureStops::sum);
+    }
+
+    /**
+     * This method starts the sampling task if memory budgets are enabled.
+     * It can be called again after a reload to apply the new interval.
+     */
+    public synchronized void start() {
+        stopTask();
+        samples.clear();
+        if (!configurationManager.isMemoryPressureEnabled()) {
+            return;
+        }
+        long interval = Math.max(5, configurationManager.getMemorySampleInterval());
+        task = plugin.getProxyServer().getScheduler().buildTask(plugin, this::sample)
+                .delay(interval, TimeUnit.SECONDS)
+                .repeat(interval, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the sampling task.
+     */
+    public synchronized void stop() {
+        stopTask();
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method returns the last sampled resources of a server.
+     *
+     * @param serverName the name of the server
+     * @return the last sample, or null if the server has not been sampled yet
+     */
+    public ServerResources getLastSample(String serverName) {
+        return samples.get(serverName);
+    }
+
+    /**
+     * This method requests the resources of the servers that may be up as background requests
+     * and checks the budgets of the nodes once every answer has arrived.
+     * Servers that are offline according to the state cache and have no players are not requested,
+     * so the sampling does not spend the request budget of the panel on servers that use no memory.
+     * If the previous round has not finished yet, the round is skipped, so the background queue can not grow.
+     */
+    private void sample() {
+        if (!sampling.compareAndSet(false, true)) {
+            return;
+        }
+        Map<String, PteroServerInfo> servers = configurationManager.getServerInfoMap();
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        Set<String> sampled = new HashSet<>();
+        for (Map.Entry<String, PteroServerInfo> entry : servers.entrySet()) {
+            String serverName = entry.getKey();
+            if (!mayBeUp(serverName, entry.getValue())) {
+                continue;
+            }
+            sampled.add(serverName);
+            requests.add(plugin.getAPIClient().getServerResourcesAsync(entry.getValue().getServerId(), RequestPriority.BACKGROUND)
+                    .handle((resources, throwable) -> {
+                        if (resources != null) {
+                            samples.put(serverName, resources);
+                        } else {
+                            samples.remove(serverName);
+                        }
+                        return null;
+                    }));
+        }
+        samples.keySet().retainAll(sampled);
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).whenComplete((ignored, throwable) -> {
+            try {
+                enforceBudgets();
+            } finally {
+                sampling.set(false);
+            }
+        });
+    }
+
+    /**
+     * This method returns whether a server may be using memory.
+     * That is the case unless the state cache knows it as offline and no players are on it.
+     * Servers whose state is not known yet are sampled, and the sample stores their state in the cache,
+     * so offline servers are only requested again once their cached state changes or expires.
+     */
+    private boolean mayBeUp(String serverName, PteroServerInfo serverInfo) {
+        return plugin.getServerStateCache().getCachedState(serverInfo.getServerId()) != ServerState.OFFLINE
+                || !plugin.getOccupancyTracker().isEmpty(serverName);
+    }
+
+    /**
+     * This method stops empty servers on every node that uses more memory than its budget.
+     * The servers are stopped in order of their memory usage, the largest first,
+     * and only as many as needed to bring the node within its budget.
+     */
+    private void enforceBudgets() {
+        Map<String, List<String>> serversByNode = new HashMap<>();
+        Map<String, Long> usedByNode = new HashMap<>();
+        for (Map.Entry<String, ServerResources> entry : samples.entrySet()) {
+            if (entry.getValue().effectiveState() == ServerState.OFFLINE) {
+                continue;
+            }
+            String node = plugin.getStartScheduler().getNode(entry.getKey());
+            serversByNode.computeIfAbsent(node, key -> new ArrayList<>()).add(entry.getKey());
+            usedByNode.merge(node, entry.getValue().memoryBytes(), Long::sum);
+        }
+
+        for (Map.Entry<String, Long> entry : usedByNode.entrySet()) {
+            String node = entry.getKey();
+            long budget = configurationManager.getNodeMemoryBudget(node) * BYTES_PER_MEGABYTE;
+            long used = entry.getValue();
+            if (budget <= 0 || used <= budget) {
+                continue;
+            }
+            List<String> candidates = new ArrayList<>();
+            for (String serverName : serversByNode.get(node)) {
+                if (isStoppable(serverName)) {
+                    candidates.add(serverName);
+                }
+            }
+            candidates.sort(Comparator.comparingLong((String serverName) -> samples.get(serverName).memoryBytes()).reversed());
+            logger.info("Node " + node + " uses " + used / BYTES_PER_MEGABYTE + " MB of its " + budget / BYTES_PER_MEGABYTE + " MB budget");
+            for (String serverName : candidates) {
+                if (used <= budget) {
+                    break;
+                }
+                long memory = samples.get(serverName).memoryBytes();
+                PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+                logger.info("Stopping empty server " + serverName + " early to free " + memory / BYTES_PER_MEGABYTE + " MB on node " + node);
+                pressureStops.increment();
+                plugin.getIdleTracker().discard(serverName);
+                plugin.getShutdownPipeline().stop(serverName, serverInfo.getServerId(), false);
+                used -= memory;
+            }
+            if (used > budget) {
+                logger.warn("Node " + node + " stays over its memory budget, no more empty servers can be stopped");
+            }
+        }
+    }
+
+    /**
+     * This method returns whether a server may be stopped to free memory.
+     * Only running servers without players that are not starting or stopping already are stopped.
+     * Servers with a negative timeout are never stopped automatically, their memory counts towards the budget
+     * of their node but can not be freed.
+     */
+    private boolean isStoppable(String serverName) {
+        ServerResources resources = samples.get(serverName);
+        PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+        return resources != null
+                && resources.effectiveState() == ServerState.RUNNING
+                && serverInfo != null
+                && serverInfo.getTimeout() >= 0
+                && plugin.getOccupancyTracker().isEmpty(serverName)
+                && !plugin.getShutdownPipeline().isStopping(serverName)
+                && !plugin.getStartupCoordinator().isStarting(serverName)
+                && !plugin.getStartScheduler().isStarting(serverName);
+    }
+
+    private long getSampledMegabytes() {
+        long total = 0;
+        for (ServerResources resources : samples.values()) {
+            total += resources.memoryBytes();
+        }
+        return total / BYTES_PER_MEGABYTE;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import org.slf4j.Logger;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the players on every server.
+ * The counters are updated when players join, switch and leave servers,
+ * so checking if a server is empty is a plain read instead of building the player collection of the server.
+ * As a safety net, the counters are reconciled with the players Velocity reports in a fixed interval.
+ */
+public class OccupancyTracker {
+    private static final long RECONCILE_INTERVAL = 30;
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final Map<String, AtomicLong> players = new ConcurrentHashMap<>();
+    private final Map<String, Long> observedDifferences = new ConcurrentHashMap<>();
+    private final LongAdder corrections = new LongAdder();
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the OccupancyTracker class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public OccupancyTracker(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        plugin.getStatistics().register("occupancy.players", this::getTotalPlayers);
+        plugin.getStatistics().register("occupancy.corrections", corrections::sum);
+    }
+
+    /**
+     * This method starts the task that reconciles the counters with Velocity.
+     */
+    public synchronized void start() {
+        if (task != null) {
+            return;
+        }
+        reconcile();
+        task = plugin.getProxyServer().getScheduler().buildTask(plugin, this::reconcile)
+                .delay(RECONCILE_INTERVAL, TimeUnit.SECONDS)
+                .repeat(RECONCILE_INTERVAL, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the task that reconciles the counters.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method counts a player joining a server.
+     *
+     * @param serverName the name of the server
+     */
+    public void onJoin(String serverName) {
+        players.computeIfAbsent(serverName, name -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * This method counts a player leaving a server.
+     *
+     * @param serverName the name of the server
+     */
+    public void onLeave(String serverName) {
+        players.computeIfAbsent(serverName, name -> new AtomicLong()).decrementAndGet();
+    }
+
+    /**
+     * This method returns the amount of players on a server.
+     *
+     * @param serverName the name of the server
+     * @return the amount of players
+     */
+    public int getPlayerCount(String serverName) {
+        AtomicLong counter = players.get(serverName);
+        return counter != null ? (int) Math.max(0, counter.get()) : 0;
+    }
+
+    /**
+     * This method returns whether no player is on a server.
+     *
+     * @param serverName the name of the server
+     * @return true if the server is empty, false otherwise
+     */
+    public boolean isEmpty(String serverName) {
+        return getPlayerCount(serverName) == 0;
+    }
+
+    private long getTotalPlayers() {
+        long total = 0;
+        for (AtomicLong counter : players.values()) {
+            total += Math.max(0, counter.get());
+        }
+        return total;
+    }
+
+    /**
+     * This method corrects the counters that differ from the players Velocity reports.
+     * Counters can drift if an event is missed, for example when a player is kicked from a server while disconnecting.
+     */
+    private void reconcile() {
+        Set<String> seen = new HashSet<>();
+        for (RegisteredServer server : plugin.getProxyServer().getAllServers()) {
+            String serverName = server.getServerInfo().getName();
+            seen.add(serverName);
+            correct(serverName, server.getPlayersConnected().size());
+        }
+        for (String serverName : players.keySet()) {
+            if (!seen.contains(serverName)) {
+                players.remove(serverName);
+                observedDifferences.remove(serverName);
+            }
+        }
+    }
+
+    /**
+     * This method corrects the counter of a server.
+     * The player list of Velocity and the counter are not read at the same instant, so a join or leave in between
+     * shows up as a difference that is not a drift. A counter is therefore only corrected once the same difference
+     * was seen in two rounds in a row, and only if the counter did not change since it was read.
+     * If the correction leaves the server empty, its shutdown is scheduled, since no leave event will do it.
+     */
+    private void correct(String serverName, long actual) {
+        AtomicLong counter = players.computeIfAbsent(serverName, name -> new AtomicLong());
+        long counted = counter.get();
+        long difference = actual - counted;
+        if (difference == 0) {
+            observedDifferences.remove(serverName);
+            return;
+        }
+        Long previous = observedDifferences.put(serverName, difference);
+        if (previous == null || previous != difference || !counter.compareAndSet(counted, actual)) {
+            return;
+        }
+        observedDifferences.remove(serverName);
+        corrections.increment();
+        logger.debug("Corrected the player count of " + serverName + " by " + difference);
+        if (actual == 0) {
+            scheduleShutdown(serverName);
+        }
+    }
+
+    private void scheduleShutdown(String serverName) {
+        PteroServerInfo serverInfo = plugin.getServerInfoMap().get(serverName);
+        if (serverInfo == null || plugin.getIdleTracker().isArmed(serverName) || plugin.getStartupCoordinator().isStarting(serverName)) {
+            return;
+        }
+        plugin.scheduleServerShutdown(serverName, serverInfo.getServerId(), serverInfo.getTimeout());
+    }
+}
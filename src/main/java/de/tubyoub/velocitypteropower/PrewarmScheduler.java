@@ -0,0 +1,299 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.api.RequestPriority;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class starts servers ahead of the demand that is expected from the join history.
+ * Every join attempt is counted in a time-of-week histogram of the server with 15 minute slots,
+ * which is persisted in the data directory.
+ * When a slot within the lead time has seen enough joins per week, the server is started before the first player arrives,
+ * limited to a budget of servers that are pre-warmed at the same time.
+ */
+public class PrewarmScheduler {
+    private static final int SLOT_MINUTES = 15;
+    private static final int SLOTS = 7 * 24 * 60 / SLOT_MINUTES;
+    private static final int MAX_COUNT = 1 << 16;
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final String HISTORY_FILE = "join-history.json";
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path historyFile;
+    private final Map<String, AtomicIntegerArray> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Long> prewarmed = new ConcurrentHashMap<>();
+    private final LongAdder prewarmStarts = new LongAdder();
+    private final Map<String, Long> recordingSince = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the PrewarmScheduler class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public PrewarmScheduler(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.historyFile = plugin.getDataDirectory().resolve(HISTORY_FILE);
+        plugin.getStatistics().register("prewarm.starts", prewarmStarts::sum);
+        plugin.getStatistics().register("prewarm.active", prewarmed::size);
+    }
+
+    /**
+     * This method counts a join attempt in the histogram of a server.
+     * Join attempts are recorded even if pre-warming is disabled, so the history is available once it is enabled.
+     *
+     * @param serverName the name of the server
+     */
+    public void recordJoin(String serverName) {
+        AtomicIntegerArray histogram = histograms.computeIfAbsent(serverName, name -> {
+            recordingSince.putIfAbsent(name, System.currentTimeMillis());
+            return new AtomicIntegerArray(SLOTS);
+        });
+        if (histogram.incrementAndGet(slotOf(ZonedDateTime.now())) >= MAX_COUNT) {
+            halve(serverName, histogram);
+        }
+        dirty = true;
+    }
+
+    /**
+     * This method loads the join history and starts the task that checks for expected demand every minute.
+     * If the task is already running, it is restarted.
+     */
+    public synchronized void start() {
+        stopTask();
+        if (histograms.isEmpty()) {
+            load();
+        }
+        task = plugin.getProxyServer().getScheduler().buildTask(plugin, this::tick)
+                .delay(1, TimeUnit.MINUTES)
+                .repeat(1, TimeUnit.MINUTES)
+                .schedule();
+    }
+
+    /**
+     * This method stops the task and saves the join history.
+     */
+    public synchronized void stop() {
+        stopTask();
+        save();
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method saves the join history if it changed and starts the servers with expected demand.
+     * Servers are ranked by their expected joins per week, and only as many as the budget allows are pre-warmed.
+     */
+    private void tick() {
+        if (dirty) {
+            save();
+        }
+        long now = System.currentTimeMillis();
+        long leadMillis = TimeUnit.MINUTES.toMillis(Math.max(1, configurationManager.getPrewarmLeadTime()));
+        prewarmed.values().removeIf(prewarmedAt -> now - prewarmedAt > leadMillis + TimeUnit.MINUTES.toMillis(SLOT_MINUTES));
+        if (!configurationManager.isPrewarmEnabled()) {
+            return;
+        }
+
+        ZonedDateTime time = ZonedDateTime.now();
+        List<Map.Entry<String, Double>> candidates = new ArrayList<>();
+        for (Map.Entry<String, AtomicIntegerArray> entry : histograms.entrySet()) {
+            if (prewarmed.containsKey(entry.getKey()) || !configurationManager.getServerInfoMap().containsKey(entry.getKey())) {
+                continue;
+            }
+            double weeks = Math.max(1, (double) (now - recordingSince.getOrDefault(entry.getKey(), now)) / WEEK_MILLIS);
+            double demand = expectedJoins(entry.getValue(), time, leadMillis) / weeks;
+            if (demand >= configurationManager.getPrewarmMinJoins()) {
+                candidates.add(Map.entry(entry.getKey(), demand));
+            }
+        }
+        candidates.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+
+        prewarmNext(candidates.iterator(), leadMillis, now);
+    }
+
+    /**
+     * This method pre-warms the candidates one after another until the budget is used up.
+     * A budget slot is only taken by a server whose start is actually submitted,
+     * servers that are already running or starting are skipped.
+     */
+    private void prewarmNext(Iterator<Map.Entry<String, Double>> candidates, long leadMillis, long now) {
+        if (prewarmed.size() >= configurationManager.getPrewarmMaxServers() || !candidates.hasNext()) {
+            return;
+        }
+        String serverName = candidates.next().getKey();
+        prewarm(serverName, leadMillis, now).whenComplete((ignored, throwable) -> prewarmNext(candidates, leadMillis, now));
+    }
+
+    /**
+     * This method starts a server if it is offline.
+     * If no player joins, the server is stopped again after the lead time and its usual timeout.
+     */
+    private CompletableFuture<Void> prewarm(String serverName, long leadMillis, long now) {
+        PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+        return plugin.getAPIClient().getServerStateAsync(serverInfo.getServerId(), RequestPriority.BACKGROUND).thenAccept(state -> {
+            if (state != ServerState.OFFLINE) {
+                return;
+            }
+            boolean submitted = plugin.getStartScheduler().submit(serverName, () -> 0, position -> { }, () -> {
+                logger.info("Pre-warming server " + serverName + " for the expected demand");
+                prewarmStarts.increment();
+                plugin.getAPIClient().powerServerAsync(serverInfo.getServerId(), "start").exceptionally(throwable -> {
+                    logger.error("Error powering server.", throwable);
+                    return null;
+                });
+            });
+            if (!submitted) {
+                return;
+            }
+            prewarmed.put(serverName, now);
+            if (serverInfo.getTimeout() >= 0) {
+                plugin.scheduleServerShutdown(serverName, serverInfo.getServerId(), (int) TimeUnit.MILLISECONDS.toSeconds(leadMillis) + serverInfo.getTimeout());
+            }
+        }).exceptionally(throwable -> {
+            logger.warn("Could not pre-warm server " + serverName + ": " + throwable.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * This method returns the highest amount of joins of the slots from now until the end of the lead time.
+     */
+    private static int expectedJoins(AtomicIntegerArray histogram, ZonedDateTime time, long leadMillis) {
+        int slots = (int) Math.max(1, TimeUnit.MILLISECONDS.toMinutes(leadMillis) / SLOT_MINUTES + 1);
+        int first = slotOf(time);
+        int expected = 0;
+        for (int i = 0; i < slots; i++) {
+            expected = Math.max(expected, histogram.get((first + i) % SLOTS));
+        }
+        return expected;
+    }
+
+    private static int slotOf(ZonedDateTime time) {
+        int minuteOfWeek = (time.getDayOfWeek().getValue() - 1) * 24 * 60 + time.getHour() * 60 + time.getMinute();
+        return minuteOfWeek / SLOT_MINUTES;
+    }
+
+    /**
+     * This method halves all counts of a histogram, which keeps the shape of the history while the counts stay small.
+     * The recorded time span of the server is halved as well, so the joins per week stay the same.
+     */
+    private synchronized void halve(String serverName, AtomicIntegerArray histogram) {
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.getAndUpdate(i, count -> count / 2);
+        }
+        long now = System.currentTimeMillis();
+        recordingSince.compute(serverName, (name, since) -> since == null ? now : now - (now - since) / 2);
+    }
+
+    private void load() {
+        if (!Files.exists(historyFile)) {
+            return;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(historyFile.toFile());
+            // Older files have one start time for all servers.
+            JsonNode since = root.path("since");
+            long fallbackSince = since.isNumber() ? since.asLong() : System.currentTimeMillis();
+            JsonNode servers = root.path("servers");
+            Iterator<Map.Entry<String, JsonNode>> fields = servers.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                AtomicIntegerArray histogram = new AtomicIntegerArray(SLOTS);
+                JsonNode counts = field.getValue();
+                for (int i = 0; i < SLOTS && i < counts.size(); i++) {
+                    histogram.set(i, counts.get(i).asInt());
+                }
+                histograms.put(field.getKey(), histogram);
+                recordingSince.put(field.getKey(), since.path(field.getKey()).asLong(fallbackSince));
+            }
+            logger.info("Loaded the join history of " + histograms.size() + " servers");
+        } catch (IOException e) {
+            logger.warn("Could not load the join history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method writes the join history to a temporary file first, so a crash never leaves a broken history behind.
+     */
+    private synchronized void save() {
+        dirty = false;
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode since = root.putObject("since");
+        recordingSince.forEach(since::put);
+        ObjectNode servers = root.putObject("servers");
+        for (Map.Entry<String, AtomicIntegerArray> entry : histograms.entrySet()) {
+            ArrayNode counts = servers.putArray(entry.getKey());
+            AtomicIntegerArray histogram = entry.getValue();
+            for (int i = 0; i < histogram.length(); i++) {
+                counts.add(histogram.get(i));
+            }
+        }
+        try {
+            Files.createDirectories(historyFile.getParent());
+            Path temporaryFile = historyFile.resolveSibling(HISTORY_FILE + ".tmp");
+            objectMapper.writeValue(temporaryFile.toFile(), root);
+            Files.move(temporaryFile, historyFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            dirty = true;
+            logger.warn("Could not save the join history: " + e.getMessage());
+        }
+    }
+}
@@ -105,6 +105,13 @@ public class PteroCommand implements SimpleCommand {
                     sender.sendMessage(getSPPPrefix().append(Component.text("You do not have permission to use this command.",TextColor.color(255,0,0))));
                 }
                 break;
+            case "stats":
+                if (sender.hasPermission("ptero.stats")) {
+                    showStatistics(sender);
+                } else {
+                    sender.sendMessage(getSPPPrefix().append(Component.text("You do not have permission to use this command.",TextColor.color(255,0,0))));
+                }
+                break;
             default:
                 sender.sendMessage(getSPPPrefix().append(Component.text("Unknown subcommand: " + subCommand)));
                 displayHelp(sender);
@@ -126,7 +133,11 @@ public class PteroCommand implements SimpleCommand {
         Map<String, PteroServerInfo> serverInfoMap = plugin.getServerInfoMap();
         if (serverInfoMap.containsKey(serverName)) {
             PteroServerInfo serverInfo = serverInfoMap.get(serverName);
-            apiClient.powerServer(serverInfo.getServerId(), "start");
+            apiClient.powerServerAsync(serverInfo.getServerId(), "start").whenComplete((result, throwable) -> {
+                if (throwable != null || !result.isSuccess()) {
+                    sender.sendMessage(getSPPPrefix().append(Component.text("The panel refused to start the server: " + serverName, NamedTextColor.RED)));
+                }
+            });
             sender.sendMessage(getSPPPrefix().append(Component.text("The server: "+ serverName + " is starting")));
         } else {
         }
@@ -147,7 +158,11 @@ public class PteroCommand implements SimpleCommand {
         Map<String, PteroServerInfo> serverInfoMap = plugin.getServerInfoMap();
         if (serverInfoMap.containsKey(serverName)) {
             PteroServerInfo serverInfo = serverInfoMap.get(serverName);
-            apiClient.powerServer(serverInfo.getServerId(), "stop");
+            apiClient.powerServerAsync(serverInfo.getServerId(), "stop").whenComplete((result, throwable) -> {
+                if (throwable != null || !result.isSuccess()) {
+                    sender.sendMessage(getSPPPrefix().append(Component.text("The panel refused to stop the server: " + serverName, NamedTextColor.RED)));
+                }
+            });
             sender.sendMessage(getSPPPrefix().append(Component.text("The server: "+ serverName + " is stopping")));
         } else {
         }
@@ -155,12 +170,31 @@ public class PteroCommand implements SimpleCommand {
 
     /**
      * This method is called to reload the configuration.
+     * The configuration is validated and applied on a scheduler thread, so the command thread does not parse the file.
      *
      * @param sender the player who executed the command
      */
     private void reloadConfig(CommandSource sender) {
-        plugin.reloadConfig();
-        sender.sendMessage(getSPPPrefix().append(Component.text("Configuration reloaded.",TextColor.color(0,255,0))));
+        proxyServer.getScheduler().buildTask(plugin, () -> {
+            if (plugin.getConfigWatcher().reload()) {
+                sender.sendMessage(getSPPPrefix().append(Component.text("Configuration reloaded.",TextColor.color(0,255,0))));
+            } else {
+                sender.sendMessage(getSPPPrefix().append(Component.text("The configuration has errors, see the console. The previous configuration stays in effect.",TextColor.color(255,0,0))));
+            }
+        }).schedule();
+    }
+
+    /**
+     * This method is called to show the runtime statistics of the plugin.
+     *
+     * @param sender the player who executed the command
+     */
+    private void showStatistics(CommandSource sender) {
+        sender.sendMessage(getSPPPrefix().append(Component.text("Statistics:", NamedTextColor.GREEN)));
+        for (Map.Entry<String, Long> entry : plugin.getStatistics().snapshot().entrySet()) {
+            sender.sendMessage(getSPPPrefix().append(Component.text(entry.getKey() + ": ", TextColor.color(66,135,245)))
+                .append(Component.text(String.valueOf(entry.getValue()), NamedTextColor.WHITE)));
+        }
     }
 
     /**
@@ -178,6 +212,7 @@ public class PteroCommand implements SimpleCommand {
             suggestions.add("start");
             suggestions.add("stop");
             suggestions.add("reload");
+            suggestions.add("stats");
             return suggestions;
         } else if (currentArgs.length == 2) {
             String subCommand = currentArgs[0].toLowerCase();
@@ -199,6 +234,7 @@ public class PteroCommand implements SimpleCommand {
         sender.sendMessage(getSPPPrefix().append(Component.text("/ptero start <serverName>", TextColor.color(66,135,245))));
         sender.sendMessage(getSPPPrefix().append(Component.text("/ptero stop <serverName>", TextColor.color(66,135,245))));
         sender.sendMessage(getSPPPrefix().append(Component.text("/ptero reload", TextColor.color(66,135,245))));
+        sender.sendMessage(getSPPPrefix().append(Component.text("/ptero stats", TextColor.color(66,135,245))));
         sender.sendMessage(getSPPPrefix().append(Component.text("/ptero help", TextColor.color(66,135,245))));
 }
 
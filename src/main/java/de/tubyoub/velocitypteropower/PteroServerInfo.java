@@ -24,14 +24,17 @@
 
 package de.tubyoub.velocitypteropower;
 
+import java.util.Objects;
+
 /**
  * This class represents the server information for a Pterodactyl server.
- * It includes the server ID, timeout, and join delay.
+ * It includes the server ID, timeout, join delay and node.
  */
 public  class PteroServerInfo {
     private final String serverId;
     private final int timeout;
     private final int joinDelay;
+    private final String node;
 
     /**
      * Constructor for the PteroServerInfo class.
@@ -41,9 +44,22 @@ public  class PteroServerInfo {
      * @param joinDelay the join delay for the server
      */
     public PteroServerInfo(String serverId, int timeout, int joinDelay) {
+        this(serverId, timeout, joinDelay, null);
+    }
+
+    /**
+     * Constructor for the PteroServerInfo class.
+     *
+     * @param serverId the ID of the server
+     * @param timeout the timeout for the server
+     * @param joinDelay the join delay for the server
+     * @param node the name of the panel node the server runs on, or null if it should be taken from the panel
+     */
+    public PteroServerInfo(String serverId, int timeout, int joinDelay, String node) {
         this.serverId = serverId;
         this.timeout = timeout;
         this.joinDelay = joinDelay;
+        this.node = node;
     }
 
     /**
@@ -72,4 +88,33 @@ public  class PteroServerInfo {
     public int getJoinDelay() {
         return joinDelay;
     }
-}
\ No newline at end of file
+
+    /**
+     * This method returns the name of the panel node the server runs on, as configured.
+     *
+     * @return the node of the server, or null if it is not configured
+     */
+    public String getNode() {
+        return node;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PteroServerInfo)) {
+            return false;
+        }
+        PteroServerInfo that = (PteroServerInfo) o;
+        return timeout == that.timeout
+                && joinDelay == that.joinDelay
+                && Objects.equals(serverId, that.serverId)
+                && Objects.equals(node, that.node);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serverId, timeout, joinDelay, node);
+    }
+}
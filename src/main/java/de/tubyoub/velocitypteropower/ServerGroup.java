@@ -0,0 +1,115 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import java.util.List;
+
+/**
+ * This class represents a group of identical servers.
+ * Players that connect to the group are sent to the least-loaded running member,
+ * and the amount of running members follows the occupancy of the group.
+ */
+public class ServerGroup {
+    private final String name;
+    private final List<String> members;
+    private final int warmSpares;
+    private final int maxPlayers;
+    private final int scaleUpThreshold;
+    private final int scaleDownThreshold;
+
+    /**
+     * Constructor for the ServerGroup class.
+     *
+     * @param name the name of the group
+     * @param members the names of the member servers, in the order they are started
+     * @param warmSpares the amount of empty members that are kept running
+     * @param maxPlayers the amount of players a member can hold
+     * @param scaleUpThreshold the occupancy in percent above which another member is started
+     * @param scaleDownThreshold the occupancy in percent below which an empty member is stopped
+     */
+    public ServerGroup(String name, List<String> members, int warmSpares, int maxPlayers, int scaleUpThreshold, int scaleDownThreshold) {
+        this.name = name;
+        this.members = List.copyOf(members);
+        this.warmSpares = warmSpares;
+        this.maxPlayers = maxPlayers;
+        this.scaleUpThreshold = scaleUpThreshold;
+        this.scaleDownThreshold = scaleDownThreshold;
+    }
+
+    /**
+     * This method returns the name of the group.
+     *
+     * @return the name of the group
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * This method returns the names of the member servers.
+     *
+     * @return the names of the member servers
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * This method returns the amount of empty members that are kept running.
+     *
+     * @return the amount of warm spares
+     */
+    public int getWarmSpares() {
+        return warmSpares;
+    }
+
+    /**
+     * This method returns the amount of players a member can hold.
+     *
+     * @return the maximum amount of players per member
+     */
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    /**
+     * This method returns the occupancy in percent above which another member is started.
+     *
+     * @return the scale up threshold
+     */
+    public int getScaleUpThreshold() {
+        return scaleUpThreshold;
+    }
+
+    /**
+     * This method returns the occupancy in percent below which an empty member is stopped.
+     *
+     * @return the scale down threshold
+     */
+    public int getScaleDownThreshold() {
+        return scaleDownThreshold;
+    }
+}
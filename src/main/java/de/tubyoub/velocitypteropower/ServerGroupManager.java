@@ -0,0 +1,270 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.api.RequestPriority;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import org.slf4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class routes players that connect to a server group and scales the group.
+ * A player is sent to the running member with the fewest players that still has room.
+ * Every few seconds the occupancy of each group is checked: members are started to keep the configured
+ * amount of warm spares and when the occupancy crosses the scale up threshold,
+ * and empty members are stopped when the occupancy falls below the scale down threshold.
+ */
+public class ServerGroupManager {
+    private static final long SCALE_INTERVAL = 10;
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ProxyServer proxyServer;
+    private final ConfigurationManager configurationManager;
+    private final LongAdder routedPlayers = new LongAdder();
+    private final LongAdder scaledUp = new LongAdder();
+    private final LongAdder scaledDown = new LongAdder();
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the ServerGroupManager class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public ServerGroupManager(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.proxyServer = plugin.getProxyServer();
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("groups.routedPlayers", routedPlayers::sum);
+        plugin.getStatistics().register("groups.scaledUp", scaledUp::sum);
+        plugin.getStatistics().register("groups.scaledDown", scaledDown::sum);
+    }
+
+    /**
+     * This method starts the task that scales the groups.
+     * If the task is already running, it is restarted.
+     */
+    public synchronized void start() {
+        stop();
+        task = proxyServer.getScheduler().buildTask(plugin, this::scaleGroups)
+                .delay(SCALE_INTERVAL, TimeUnit.SECONDS)
+                .repeat(SCALE_INTERVAL, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the task that scales the groups.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method returns the group with the given name.
+     *
+     * @param name the name of the group
+     * @return the group, or empty if there is no group with this name
+     */
+    public Optional<ServerGroup> getGroup(String name) {
+        return Optional.ofNullable(configurationManager.getServerGroups().get(name));
+    }
+
+    /**
+     * This method selects the member of a group a player should be sent to.
+     * The running member with the fewest players that still has room is preferred.
+     * If no running member has room, a member that is already starting is chosen, and otherwise the first offline member.
+     * Members whose state the panel can not tell right now are judged by their last known state.
+     *
+     * @param group the group the player connects to
+     * @return a future that completes with the selected member, or empty if all members are full or unavailable
+     */
+    public CompletableFuture<Optional<GroupRoute>> route(ServerGroup group) {
+        return getMemberStates(group, RequestPriority.INTERACTIVE).thenApply(states -> {
+            states.replaceAll((member, state) -> state == ServerState.UNKNOWN ? getLastKnownState(member) : state);
+            String leastLoaded = null;
+            int leastPlayers = Integer.MAX_VALUE;
+            for (Map.Entry<String, ServerState> entry : states.entrySet()) {
+                if (entry.getValue() != ServerState.RUNNING) {
+                    continue;
+                }
+                int players = getPlayerCount(entry.getKey());
+                if (players < group.getMaxPlayers() && players < leastPlayers) {
+                    leastLoaded = entry.getKey();
+                    leastPlayers = players;
+                }
+            }
+            if (leastLoaded != null) {
+                routedPlayers.increment();
+                return Optional.of(new GroupRoute(leastLoaded, true));
+            }
+            for (Map.Entry<String, ServerState> entry : states.entrySet()) {
+                if (entry.getValue() == ServerState.STARTING || plugin.getStartupCoordinator().isStarting(entry.getKey())) {
+                    return Optional.of(new GroupRoute(entry.getKey(), false));
+                }
+            }
+            for (Map.Entry<String, ServerState> entry : states.entrySet()) {
+                if (entry.getValue() == ServerState.OFFLINE) {
+                    return Optional.of(new GroupRoute(entry.getKey(), false));
+                }
+            }
+            return Optional.empty();
+        });
+    }
+
+    private void scaleGroups() {
+        for (ServerGroup group : configurationManager.getServerGroups().values()) {
+            getMemberStates(group, RequestPriority.BACKGROUND)
+                    .thenAccept(states -> scale(group, states))
+                    .exceptionally(throwable -> {
+                        logger.warn("Could not scale group " + group.getName() + ": " + throwable.getMessage());
+                        return null;
+                    });
+        }
+    }
+
+    /**
+     * This method starts or stops one member of a group depending on its occupancy.
+     * Only one member is started or stopped per check, so the group does not overshoot while states change.
+     */
+    private void scale(ServerGroup group, Map<String, ServerState> states) {
+        int running = 0;
+        int players = 0;
+        int spares = 0;
+        String offlineMember = null;
+        String emptyMember = null;
+        for (Map.Entry<String, ServerState> entry : states.entrySet()) {
+            String member = entry.getKey();
+            ServerState state = entry.getValue();
+            if (state == ServerState.STARTING || plugin.getStartupCoordinator().isStarting(member) || plugin.getStartScheduler().isPending(member)) {
+                spares++;
+            } else if (state == ServerState.RUNNING) {
+                int memberPlayers = getPlayerCount(member);
+                running++;
+                players += memberPlayers;
+                if (memberPlayers == 0) {
+                    spares++;
+                    emptyMember = member;
+                }
+            } else if (state == ServerState.OFFLINE && offlineMember == null) {
+                offlineMember = member;
+            }
+        }
+        int capacity = running * Math.max(1, group.getMaxPlayers());
+        int occupancy = capacity == 0 ? 0 : players * 100 / capacity;
+
+        if (offlineMember != null && (spares < group.getWarmSpares() || (capacity > 0 && occupancy >= group.getScaleUpThreshold()))) {
+            logger.info("Scaling up group " + group.getName() + " (" + occupancy + "% occupied), starting " + offlineMember);
+            scaledUp.increment();
+            String member = offlineMember;
+            plugin.getStartScheduler().submit(member, () -> 0, position -> { }, () -> power(member, "start"));
+            return;
+        }
+        if (emptyMember != null && spares > group.getWarmSpares()) {
+            int remainingCapacity = (running - 1) * Math.max(1, group.getMaxPlayers());
+            int remainingOccupancy = remainingCapacity == 0 ? 100 : players * 100 / remainingCapacity;
+            if (occupancy < group.getScaleDownThreshold() && remainingOccupancy < group.getScaleUpThreshold()) {
+                logger.info("Scaling down group " + group.getName() + " (" + occupancy + "% occupied), stopping " + emptyMember);
+                scaledDown.increment();
+                plugin.getIdleTracker().discard(emptyMember);
+                plugin.getShutdownPipeline().stop(emptyMember, configurationManager.getServerInfoMap().get(emptyMember).getServerId(), false);
+            }
+        }
+    }
+
+    private void power(String serverName, String signal) {
+        PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+        plugin.getAPIClient().powerServerAsync(serverInfo.getServerId(), signal).exceptionally(throwable -> {
+            logger.error("Error powering server.", throwable);
+            return null;
+        });
+    }
+
+    /**
+     * This method requests the states of all configured members of a group.
+     * Members that are not configured in the servers section are skipped, members whose state cannot be requested are reported as unknown.
+     */
+    private CompletableFuture<Map<String, ServerState>> getMemberStates(ServerGroup group, RequestPriority priority) {
+        Map<String, CompletableFuture<ServerState>> futures = new LinkedHashMap<>();
+        for (String member : group.getMembers()) {
+            PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(member);
+            if (serverInfo != null) {
+                futures.put(member, plugin.getAPIClient().getServerStateAsync(serverInfo.getServerId(), priority)
+                        .exceptionally(throwable -> ServerState.UNKNOWN));
+            }
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<String, ServerState> states = new LinkedHashMap<>();
+            futures.forEach((member, future) -> states.put(member, future.join()));
+            return states;
+        });
+    }
+
+    /**
+     * This method returns whether a member of a group is known to be running.
+     * It tells a group whose members are all full apart from a group whose members are unavailable.
+     *
+     * @param group the group
+     * @return true if the last known state of a member is running, false otherwise
+     */
+    public boolean hasRunningMember(ServerGroup group) {
+        for (String member : group.getMembers()) {
+            if (getLastKnownState(member) == ServerState.RUNNING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ServerState getLastKnownState(String serverName) {
+        PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+        return serverInfo != null ? plugin.getServerStateCache().getCachedState(serverInfo.getServerId()) : ServerState.UNKNOWN;
+    }
+
+    private int getPlayerCount(String serverName) {
+        return plugin.getOccupancyTracker().getPlayerCount(serverName);
+    }
+
+    /**
+     * This record holds the member a player is sent to and whether the member is already running.
+     *
+     * @param serverName the name of the member
+     * @param running true if the member is running, false if it has to be started first
+     */
+    public record GroupRoute(String serverName, boolean running) {
+    }
+}
@@ -31,17 +31,14 @@ import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import de.tubyoub.velocitypteropower.api.PanelAPIClient;
-import de.tubyoub.velocitypteropower.api.PterodactylAPIClient;
 import org.slf4j.Logger;
 
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class listens to server switch events and disconnect events.
- * It uses the Pterodactyl API client to check if a server is empty and schedules a shutdown if it is.
+ * It keeps the player counts of the occupancy tracker up to date,
+ * uses the Pterodactyl API client to check if a server is empty and schedules a shutdown if it is.
  */
 public class ServerSwitchListener {
 
@@ -50,8 +47,6 @@ public class ServerSwitchListener {
     private final ProxyServer proxyServer;
     private final PanelAPIClient apiClient;
     private final ConfigurationManager configurationManager;
-    private final Set<String> startingServers = ConcurrentHashMap.newKeySet();
-    private Map<String, PteroServerInfo> serverInfoMap;
 
     /**
      * Constructor for the ServerSwitchListener class.
@@ -64,20 +59,22 @@ public class ServerSwitchListener {
         this.proxyServer = plugin.getProxyServer();
         this.apiClient = plugin.getAPIClient();
         this.configurationManager = plugin.getConfigurationManager();
-        this.serverInfoMap = configurationManager.getServerInfoMap();
     }
 
     /**
      * This method is called when a disconnect event occurs.
-     * It checks if the server the player was on is empty and schedules a shutdown if it is.
+     * It removes the player from the queues of starting servers,
+     * and checks if the server the player was on is empty and schedules a shutdown if it is.
      *
      * @param event the disconnect event
      */
     @Subscribe
     public void onDisconnect(DisconnectEvent event) {
+        plugin.getStartupCoordinator().removePlayer(event.getPlayer());
         Optional<ServerConnection> serverConnection = event.getPlayer().getCurrentServer();
         if (serverConnection.isPresent()) {
             String serverName = serverConnection.get().getServerInfo().getName();
+            plugin.getOccupancyTracker().onLeave(serverName);
             PteroServerInfo serverInfo = plugin.getServerInfoMap().get(serverName);
             if (serverInfo != null && apiClient.isServerEmpty(serverName)) {
                 plugin.scheduleServerShutdown(serverName, serverInfo.getServerId(), serverInfo.getTimeout());
@@ -87,17 +84,22 @@ public class ServerSwitchListener {
 
     /**
      * This method is called when a server switch event occurs.
-     * It checks if the server the player was on is empty and schedules a shutdown if it is.
+     * It cancels the pending shutdown of the server the player joined,
+     * and checks if the server the player was on is empty and schedules a shutdown if it is.
      *
      * @param event the server connected event
      */
     @Subscribe
     public void onServerSwitch(ServerConnectedEvent event) {
+        String joinedServer = event.getServer().getServerInfo().getName();
+        plugin.getOccupancyTracker().onJoin(joinedServer);
+        plugin.getIdleTracker().cancel(joinedServer);
         Optional<RegisteredServer> previousServerConnection = event.getPreviousServer();
         if (previousServerConnection.isPresent()) {
             String serverName = previousServerConnection.get().getServerInfo().getName();
+            plugin.getOccupancyTracker().onLeave(serverName);
             PteroServerInfo serverInfo = plugin.getServerInfoMap().get(serverName);
-            if (serverInfo != null && apiClient.isServerEmpty(serverInfo.getServerId())) {
+            if (serverInfo != null && apiClient.isServerEmpty(serverName)) {
                 plugin.scheduleServerShutdown(serverName, serverInfo.getServerId(), serverInfo.getTimeout());
             }
         }
@@ -0,0 +1,238 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import de.tubyoub.velocitypteropower.api.RequestPriority;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class stops servers gracefully.
+ * The configured pre-stop commands, for example "save-all", are sent to the console first, then the stop signal.
+ * If the server has not reached the offline state within the kill timeout, it is killed,
+ * so a hung server does not hold the memory of its node.
+ * The time every server takes to stop is recorded, the kill timeout is always the configured one,
+ * so a server that usually stops quickly is not killed during a slow save.
+ */
+public class ShutdownPipeline {
+    private static final long CHECK_INTERVAL = 2;
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final Map<String, CompletableFuture<Void>> stopping = new ConcurrentHashMap<>();
+    private final Map<String, DurationHistogram> stopDurations = new ConcurrentHashMap<>();
+    private final DurationHistogram allStopDurations = new DurationHistogram();
+    private final LongAdder kills = new LongAdder();
+    private final LongAdder abortedStops = new LongAdder();
+
+    /**
+     * Constructor for the ShutdownPipeline class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public ShutdownPipeline(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("shutdown.stops", allStopDurations::getCount);
+        plugin.getStatistics().register("shutdown.kills", kills::sum);
+        plugin.getStatistics().register("shutdown.abortedStops", abortedStops::sum);
+        plugin.getStatistics().register("shutdown.stopMillis.p50", () -> allStopDurations.getPercentile(50));
+        plugin.getStatistics().register("shutdown.stopMillis.p95", () -> allStopDurations.getPercentile(95));
+        plugin.getStatistics().register("shutdown.stopMillis.max", allStopDurations::getMax);
+    }
+
+    /**
+     * This method stops a server gracefully.
+     * If the server is already being stopped, the running stop is returned.
+     * If a player joins the server while the pre-stop commands run, the stop is aborted.
+     * If the server is offline already, neither the pre-stop commands nor the stop signal are sent and nothing is recorded,
+     * so only stops that took a running server offline count towards the stop durations and the bounce detection.
+     *
+     * Only stops because of the idle timeout are reported to the anti-flap policy,
+     * a server that was stopped to free memory or to scale down its group and is started again did not bounce.
+     *
+     * @param serverName the name of the server
+     * @param serverId the ID of the server
+     * @param idle true if the server is stopped because its idle timeout expired
+     * @return a future that completes once the server is offline, was killed or the stop was aborted
+     */
+    public CompletableFuture<Void> stop(String serverName, String serverId, boolean idle) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> running = stopping.putIfAbsent(serverName, created);
+        if (running != null) {
+            return running;
+        }
+        created.whenComplete((ignored, throwable) -> stopping.remove(serverName, created));
+        plugin.getAPIClient().getServerStateAsync(serverId, RequestPriority.BACKGROUND).whenComplete((state, error) -> {
+            if (state == ServerState.OFFLINE) {
+                logger.info("Server " + serverName + " is already offline");
+                created.complete(null);
+                return;
+            }
+            sendPreStopCommands(serverId).whenComplete((ignored, throwable) -> {
+                if (!plugin.getAPIClient().isServerEmpty(serverName)) {
+                    logger.info("Shutdown cancelled for server: " + serverName + ". Players are present.");
+                    abortedStops.increment();
+                    created.complete(null);
+                    return;
+                }
+                sendStop(serverName, serverId, idle, created);
+            });
+        });
+        return created;
+    }
+
+    /**
+     * This method returns whether a server is currently being stopped.
+     *
+     * @param serverName the name of the server
+     * @return true if the server is being stopped, false otherwise
+     */
+    public boolean isStopping(String serverName) {
+        return stopping.containsKey(serverName);
+    }
+
+    /**
+     * This method returns the recorded stop durations of a server.
+     *
+     * @param serverName the name of the server
+     * @return the histogram of the stop durations, which is empty if the server was never stopped
+     */
+    public DurationHistogram getStopDurations(String serverName) {
+        return stopDurations.getOrDefault(serverName, new DurationHistogram());
+    }
+
+    /**
+     * This method sends the stop signal to a server that is not known to be offline and waits until it is offline.
+     */
+    private void sendStop(String serverName, String serverId, boolean idle, CompletableFuture<Void> created) {
+        logger.info("Shutting down server: " + serverName);
+        long stopRequestedAt = System.nanoTime();
+        plugin.getAPIClient().powerServerAsync(serverId, "stop").whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Error powering server.", error);
+                created.complete(null);
+                return;
+            }
+            if (!result.isSuccess()) {
+                logger.warn("The panel refused to stop server " + serverName + ", status code: " + result.getStatusCode());
+                created.complete(null);
+                return;
+            }
+            awaitOffline(serverName, serverId, idle, stopRequestedAt, created);
+        });
+    }
+
+    /**
+     * This method sends the pre-stop commands one after another.
+     * Commands that fail are logged and skipped, and after the last command the configured delay is waited,
+     * so the server can finish, for example, saving its worlds.
+     */
+    private CompletableFuture<Void> sendPreStopCommands(String serverId) {
+        List<String> commands = configurationManager.getPreStopCommands();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        if (commands.isEmpty()) {
+            return chain;
+        }
+        for (String command : commands) {
+            chain = chain.thenCompose(ignored -> plugin.getAPIClient().sendCommandAsync(serverId, command)
+                    .handle((result, throwable) -> {
+                        if (throwable != null || !result.isSuccess()) {
+                            logger.warn("Could not send the pre-stop command '" + command + "' to server " + serverId);
+                        }
+                        return null;
+                    }));
+        }
+        Executor delay = CompletableFuture.delayedExecutor(Math.max(0, configurationManager.getPreStopDelay()), TimeUnit.SECONDS);
+        return chain.thenRunAsync(() -> { }, delay);
+    }
+
+    /**
+     * This method checks the state of a stopping server until it is offline or its kill timeout has passed.
+     */
+    private void awaitOffline(String serverName, String serverId, boolean idle, long stopRequestedAt, CompletableFuture<Void> stop) {
+        Executor delay = CompletableFuture.delayedExecutor(CHECK_INTERVAL, TimeUnit.SECONDS);
+        CompletableFuture.runAsync(() -> { }, delay)
+                .thenCompose(ignored -> plugin.getAPIClient().getServerStateAsync(serverId, RequestPriority.BACKGROUND))
+                .whenComplete((state, throwable) -> {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopRequestedAt);
+                    if (state == ServerState.OFFLINE) {
+                        recordStop(serverName, elapsed);
+                        if (idle) {
+                            plugin.getAntiFlapPolicy().onStopped(serverName);
+                        }
+                        stop.complete(null);
+                        return;
+                    }
+                    long killTimeout = getKillTimeout();
+                    if (killTimeout > 0 && elapsed >= killTimeout) {
+                        logger.warn("Server " + serverName + " did not stop within " + TimeUnit.MILLISECONDS.toSeconds(killTimeout) + " seconds, killing it");
+                        kills.increment();
+                        if (idle) {
+                            plugin.getAntiFlapPolicy().onStopped(serverName);
+                        }
+                        plugin.getAPIClient().powerServerAsync(serverId, "kill").whenComplete((result, error) -> {
+                            if (error != null) {
+                                logger.error("Error powering server.", error);
+                            }
+                            stop.complete(null);
+                        });
+                        return;
+                    }
+                    awaitOffline(serverName, serverId, idle, stopRequestedAt, stop);
+                });
+    }
+
+    /**
+     * This method returns the time after which a stopping server is killed.
+     *
+     * @return the kill timeout in milliseconds, or 0 if servers are never killed
+     */
+    private long getKillTimeout() {
+        return Math.max(0, TimeUnit.SECONDS.toMillis(configurationManager.getKillTimeout()));
+    }
+
+    private void recordStop(String serverName, long durationMillis) {
+        stopDurations.computeIfAbsent(serverName, name -> {
+            DurationHistogram histogram = new DurationHistogram();
+            plugin.getStatistics().register("shutdown.stopMillis." + name + ".p50", () -> histogram.getPercentile(50));
+            plugin.getStatistics().register("shutdown.stopMillis." + name + ".p95", () -> histogram.getPercentile(95));
+            return histogram;
+        }).record(durationMillis);
+        allStopDurations.record(durationMillis);
+        logger.info("Server " + serverName + " stopped after " + durationMillis + " ms");
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * This class limits how many servers of a panel node start at the same time.
+ * After a proxy restart many players reconnect at once, and starting all their servers together
+ * makes every server on the node boot slower.
+ * Starts beyond the limit of a node wait in a queue that is ordered by the amount of waiting players,
+ * and a start no longer counts against the limit once the server is running, stopped again or the start timed out.
+ * The node of a server is taken from the server configuration or from the server list of the panel.
+ */
+public class StartScheduler {
+    private static final String UNKNOWN_NODE = "unknown";
+    private static final long SWEEP_INTERVAL = 5;
+    private static final long MIN_START_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final Map<String, String> panelNodes = new ConcurrentHashMap<>();
+    private final Map<String, Long> runningStarts = new HashMap<>();
+    private final List<PendingStart> pendingStarts = new ArrayList<>();
+    private final LongAdder queuedStarts = new LongAdder();
+    private long sequence;
+    private ScheduledTask task;
+
+    /**
+     * Constructor for the StartScheduler class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public StartScheduler(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("startLimit.running", this::getRunningCount);
+        plugin.getStatistics().register("startLimit.queued", this::getPendingCount);
+        plugin.getStatistics().register("startLimit.queuedStarts", queuedStarts::sum);
+    }
+
+    /**
+     * This method reads the nodes of the servers that have no node configured from the panel
+     * and starts the task that frees the limit of finished starts.
+     * If the task is already running, it is restarted.
+     */
+    public synchronized void start() {
+        stop();
+        List<String> serverIds = new ArrayList<>();
+        for (PteroServerInfo serverInfo : configurationManager.getServerInfoMap().values()) {
+            if (serverInfo.getNode() == null) {
+                serverIds.add(serverInfo.getServerId());
+            }
+        }
+        if (!serverIds.isEmpty()) {
+            plugin.getAPIClient().getServerNodesAsync(serverIds).thenAccept(nodes -> {
+                panelNodes.putAll(nodes);
+                logger.info("Read the nodes of " + nodes.size() + " servers from the panel");
+            }).exceptionally(throwable -> {
+                logger.warn("Could not read the nodes of the servers from the panel: " + throwable.getMessage());
+                return null;
+            });
+        }
+        task = plugin.getProxyServer().getScheduler().buildTask(plugin, this::sweep)
+                .delay(SWEEP_INTERVAL, TimeUnit.SECONDS)
+                .repeat(SWEEP_INTERVAL, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the task that frees the limit of finished starts.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * This method submits the start of a server.
+     * If the node of the server has a free slot, the start action runs right away,
+     * otherwise the start is queued until a slot is free.
+     * A server that is already starting or queued is not submitted again.
+     *
+     * @param serverName the name of the server
+     * @param waitingPlayers the supplier of the amount of players waiting for the server, which decides the order of the queue
+     * @param positionListener the listener that is told the position of the start in the queue whenever it changes, 0 once it starts
+     * @param startAction the action that sends the start signal
+     * @return true if the start was submitted, false if the server is already starting or queued
+     */
+    public boolean submit(String serverName, IntSupplier waitingPlayers, IntConsumer positionListener, Runnable startAction) {
+        PendingStart pendingStart = new PendingStart(serverName, getNode(serverName), waitingPlayers, positionListener, startAction);
+        synchronized (this) {
+            if (runningStarts.containsKey(serverName) || isPending(serverName)) {
+                return false;
+            }
+            pendingStart.sequence = sequence++;
+            pendingStarts.add(pendingStart);
+        }
+        dispatch();
+        synchronized (this) {
+            if (pendingStarts.contains(pendingStart)) {
+                queuedStarts.increment();
+                logger.info("Start of server " + serverName + " is queued, node " + pendingStart.node + " is at its start limit");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method frees the slot of a server once it is running, so the next queued start can run.
+     * If the start of the server is still queued, for example because the server was started by someone else, it is removed from the queue.
+     *
+     * @param serverName the name of the server
+     */
+    public void release(String serverName) {
+        synchronized (this) {
+            boolean released = runningStarts.remove(serverName) != null;
+            if (!pendingStarts.removeIf(pendingStart -> pendingStart.serverName.equals(serverName)) && !released) {
+                return;
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * This method returns the position of a queued start among the queued starts of its node.
+     *
+     * @param serverName the name of the server
+     * @return the position starting at 1, or 0 if the start is not queued
+     */
+    public synchronized int getQueuePosition(String serverName) {
+        for (Map.Entry<PendingStart, Integer> entry : getPositions().entrySet()) {
+            if (entry.getKey().serverName.equals(serverName)) {
+                return entry.getValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * This method returns how many rounds of starts on its node have to finish before a queued start runs.
+     *
+     * @param serverName the name of the server
+     * @return the amount of start rounds ahead, or 0 if the start is not queued or the node has no limit
+     */
+    public synchronized int getRoundsAhead(String serverName) {
+        int position = getQueuePosition(serverName);
+        int limit = getLimit(getNode(serverName));
+        if (position == 0 || limit <= 0) {
+            return 0;
+        }
+        return (position + limit - 1) / limit;
+    }
+
+    /**
+     * This method returns whether the start of a server is queued or holds a start slot.
+     *
+     * @param serverName the name of the server
+     * @return true if the server is queued or starting, false otherwise
+     */
+    public synchronized boolean isStarting(String serverName) {
+        return runningStarts.containsKey(serverName) || isPending(serverName);
+    }
+
+    /**
+     * This method returns when the start signal of a server was sent, no matter who submitted the start.
+     *
+     * @param serverName the name of the server
+     * @return the {@link System#nanoTime()} of the start, or 0 if the server does not hold a start slot
+     */
+    public synchronized long getStartedAt(String serverName) {
+        Long startedAt = runningStarts.get(serverName);
+        return startedAt != null ? startedAt : 0;
+    }
+
+    /**
+     * This method returns whether the start of a server is queued.
+     *
+     * @param serverName the name of the server
+     * @return true if the start is queued, false otherwise
+     */
+    public synchronized boolean isPending(String serverName) {
+        for (PendingStart pendingStart : pendingStarts) {
+            if (pendingStart.serverName.equals(serverName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized long getRunningCount() {
+        return runningStarts.size();
+    }
+
+    private synchronized long getPendingCount() {
+        return pendingStarts.size();
+    }
+
+    /**
+     * This method runs the queued starts for which a slot is free, the ones with the most waiting players first,
+     * and tells the remaining starts their new positions.
+     * The start actions and listeners run outside of the lock.
+     */
+    private void dispatch() {
+        List<PendingStart> started = new ArrayList<>();
+        Map<PendingStart, Integer> positions;
+        synchronized (this) {
+            snapshotWaitingPlayers();
+            pendingStarts.sort(queueOrder());
+            Map<String, Integer> nodeStarts = new HashMap<>();
+            for (String serverName : runningStarts.keySet()) {
+                nodeStarts.merge(getNode(serverName), 1, Integer::sum);
+            }
+            Iterator<PendingStart> iterator = pendingStarts.iterator();
+            while (iterator.hasNext()) {
+                PendingStart pendingStart = iterator.next();
+                int limit = getLimit(pendingStart.node);
+                int starts = nodeStarts.getOrDefault(pendingStart.node, 0);
+                if (limit <= 0 || starts < limit) {
+                    iterator.remove();
+                    nodeStarts.put(pendingStart.node, starts + 1);
+                    runningStarts.put(pendingStart.serverName, System.nanoTime());
+                    started.add(pendingStart);
+                }
+            }
+            positions = getPositions();
+        }
+        for (PendingStart pendingStart : started) {
+            pendingStart.notifyPosition(0);
+            plugin.getAntiFlapPolicy().onStarting(pendingStart.serverName);
+            try {
+                pendingStart.startAction.run();
+            } catch (RuntimeException e) {
+                logger.error("Error starting server " + pendingStart.serverName, e);
+            }
+        }
+        positions.forEach(PendingStart::notifyPosition);
+    }
+
+    /**
+     * This method returns the position of every queued start within the queue of its node.
+     */
+    private Map<PendingStart, Integer> getPositions() {
+        snapshotWaitingPlayers();
+        List<PendingStart> ordered = new ArrayList<>(pendingStarts);
+        ordered.sort(queueOrder());
+        Map<PendingStart, Integer> positions = new HashMap<>();
+        Map<String, Integer> nodePositions = new HashMap<>();
+        for (PendingStart pendingStart : ordered) {
+            positions.put(pendingStart, nodePositions.merge(pendingStart.node, 1, Integer::sum));
+        }
+        return positions;
+    }
+
+    /**
+     * This method copies the current amount of waiting players into every queued start.
+     * The queue is sorted on the copies, because the live counts can change while the queue is sorted,
+     * which would break the contract of the comparator.
+     */
+    private void snapshotWaitingPlayers() {
+        for (PendingStart pendingStart : pendingStarts) {
+            pendingStart.waiting = pendingStart.waitingPlayers.getAsInt();
+        }
+    }
+
+    private static Comparator<PendingStart> queueOrder() {
+        return Comparator.comparingInt((PendingStart pendingStart) -> pendingStart.waiting).reversed()
+                .thenComparingLong(pendingStart -> pendingStart.sequence);
+    }
+
+    /**
+     * This method frees the slots of starts that are finished according to the cached server state or that timed out.
+     * This covers starts that were not made for waiting players, for example by pre-warming or group scaling.
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.SECONDS.toMillis(configurationManager.getStartSlotTimeout());
+        List<String> finished = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Long> entry : runningStarts.entrySet()) {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(now - entry.getValue());
+                PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(entry.getKey());
+                ServerState state = serverInfo != null ? plugin.getServerStateCache().getCachedState(serverInfo.getServerId()) : ServerState.UNKNOWN;
+                if (serverInfo == null || elapsed > timeout || state == ServerState.RUNNING
+                        || (state == ServerState.OFFLINE && elapsed > MIN_START_MILLIS)) {
+                    finished.add(entry.getKey());
+                }
+            }
+            finished.forEach(runningStarts::remove);
+        }
+        if (!finished.isEmpty()) {
+            dispatch();
+        }
+    }
+
+    /**
+     * This method returns how many servers of a node may start at the same time.
+     * Servers whose node is not known are not limited, unless a limit is configured for the "unknown" node,
+     * because otherwise every server of a panel that does not report nodes would share a single limit.
+     */
+    private int getLimit(String node) {
+        if (UNKNOWN_NODE.equals(node) && !configurationManager.hasNodeStartLimit(node)) {
+            return 0;
+        }
+        return configurationManager.getMaxConcurrentStarts(node);
+    }
+
+    /**
+     * This method returns the panel node of a server.
+     * The node configured for the server is used first, then the node reported by the panel.
+     *
+     * @param serverName the name of the server
+     * @return the name of the node, or a shared placeholder if the node is not known
+     */
+    public String getNode(String serverName) {
+        PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+        if (serverInfo == null) {
+            return UNKNOWN_NODE;
+        }
+        if (serverInfo.getNode() != null) {
+            return serverInfo.getNode();
+        }
+        return panelNodes.getOrDefault(serverInfo.getServerId(), UNKNOWN_NODE);
+    }
+
+    /**
+     * This class holds a start that waits for a free slot on its node.
+     */
+    private static final class PendingStart {
+        private final String serverName;
+        private final String node;
+        private final IntSupplier waitingPlayers;
+        private final IntConsumer positionListener;
+        private final Runnable startAction;
+        private long sequence;
+        private int waiting;
+        private int lastPosition = -1;
+
+        private PendingStart(String serverName, String node, IntSupplier waitingPlayers, IntConsumer positionListener, Runnable startAction) {
+            this.serverName = serverName;
+            this.node = node;
+            this.waitingPlayers = waitingPlayers;
+            this.positionListener = positionListener;
+            this.startAction = startAction;
+        }
+
+        private synchronized void notifyPosition(int position) {
+            if (position == lastPosition) {
+                return;
+            }
+            lastPosition = position;
+            positionListener.accept(position);
+        }
+    }
+}
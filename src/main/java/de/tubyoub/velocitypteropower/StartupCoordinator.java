@@ -0,0 +1,580 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.PingOptions;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.api.RequestPriority;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class coordinates the startup of servers that players are waiting for.
+ * Every starting server has a single readiness watcher and a queue of waiting players,
+ * no matter how many players are waiting for it.
+ * A server is ready once the checks of the configured {@link ReadinessMode} succeed.
+ * Once the server is running, the queue is connected in batches, so the server is not flooded with logins.
+ */
+public class StartupCoordinator {
+    private static final long PING_INTERVAL = 500;
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ProxyServer proxyServer;
+    private final ConfigurationManager configurationManager;
+    private final Map<String, StartingServer> startingServers = new ConcurrentHashMap<>();
+    private final StartupDurationTracker durationTracker = new StartupDurationTracker();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder pings = new LongAdder();
+
+    /**
+     * Constructor for the StartupCoordinator class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public StartupCoordinator(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.proxyServer = plugin.getProxyServer();
+        this.configurationManager = plugin.getConfigurationManager();
+        plugin.getStatistics().register("startup.startingServers", startingServers::size);
+        plugin.getStatistics().register("startup.waitingPlayers", () -> startingServers.values().stream().mapToLong(StartingServer::size).sum());
+        plugin.getStatistics().register("startup.probes", probes::sum);
+        plugin.getStatistics().register("startup.pings", pings::sum);
+        plugin.getStatistics().register("startup.learnedServers", durationTracker::size);
+    }
+
+    /**
+     * This method returns the tracker of the learned startup durations.
+     *
+     * @return the StartupDurationTracker instance
+     */
+    public StartupDurationTracker getDurationTracker() {
+        return durationTracker;
+    }
+
+    /**
+     * This method returns whether a server is currently being started.
+     *
+     * @param serverName the name of the server
+     * @return true if the server is starting, false otherwise
+     */
+    public boolean isStarting(String serverName) {
+        return startingServers.containsKey(serverName);
+    }
+
+    /**
+     * This method returns the names of the servers that are currently being started.
+     *
+     * @return the names of the starting servers
+     */
+    public Set<String> getStartingServers() {
+        return Set.copyOf(startingServers.keySet());
+    }
+
+    /**
+     * This method returns the players that wait for a server, in the order they are connected.
+     *
+     * @param serverName the name of the server
+     * @return the waiting players, or an empty list if the server is not starting
+     */
+    public List<Player> getWaitingPlayers(String serverName) {
+        StartingServer startingServer = startingServers.get(serverName);
+        return startingServer != null ? startingServer.getWaitingPlayers() : List.of();
+    }
+
+    /**
+     * This method estimates the time until a starting server is ready from its learned startup duration.
+     * If the start is still queued, every start round ahead of it in the start queue adds another startup duration.
+     *
+     * @param serverName the name of the server
+     * @return the estimated time in milliseconds, or empty if the server is not starting or its startup duration is not known yet
+     */
+    public OptionalLong getEstimatedTimeToReady(String serverName) {
+        StartingServer startingServer = startingServers.get(serverName);
+        OptionalLong expected = durationTracker.getExpectedDuration(serverName);
+        if (startingServer == null || expected.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        if (startingServer.startedAt == 0) {
+            return OptionalLong.of(expected.getAsLong() * (1 + plugin.getStartScheduler().getRoundsAhead(serverName)));
+        }
+        return OptionalLong.of(Math.max(0, expected.getAsLong() - startingServer.elapsedMillis()));
+    }
+
+    /**
+     * This method adds a player to the queue of a server that is not running.
+     * If the server is not starting yet, its start is submitted to the {@link StartScheduler}.
+     * A player can only wait for one server, so the player is removed from all other queues.
+     *
+     * @param serverName the name of the server
+     * @param serverInfo the configuration of the server
+     * @param player the player that wants to join the server
+     * @return true if the server was already starting, false if it was started by this call
+     */
+    public boolean queuePlayer(String serverName, PteroServerInfo serverInfo, Player player) {
+        for (StartingServer startingServer : startingServers.values()) {
+            if (!startingServer.serverName.equals(serverName)) {
+                startingServer.remove(player);
+            }
+        }
+        while (true) {
+            StartingServer created = new StartingServer(serverName, serverInfo.getServerId());
+            StartingServer startingServer = startingServers.putIfAbsent(serverName, created);
+            boolean alreadyStarting = startingServer != null;
+            if (startingServer == null) {
+                startingServer = created;
+                begin(startingServer);
+            }
+            if (startingServer.add(player)) {
+                return alreadyStarting;
+            }
+            // The server became ready in the meantime, connect the player directly unless a new startup was created
+            if (!startingServers.containsKey(serverName)) {
+                proxyServer.getServer(serverName).ifPresent(server -> connectPlayer(player, server));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * This method removes a player from every queue, for example because the player left the proxy.
+     *
+     * @param player the player to remove
+     */
+    public void removePlayer(Player player) {
+        for (StartingServer startingServer : startingServers.values()) {
+            startingServer.remove(player);
+        }
+    }
+
+    /**
+     * This method is called when a server is known to be running, for example from a pre-connect check.
+     * If players are waiting for the server, they are connected as soon as the server is ready.
+     *
+     * @param serverName the name of the server
+     */
+    public void onServerRunning(String serverName) {
+        StartingServer startingServer = startingServers.get(serverName);
+        if (startingServer != null) {
+            onPanelRunning(startingServer);
+        }
+    }
+
+    /**
+     * This method stops all readiness watchers.
+     */
+    public void stop() {
+        for (StartingServer startingServer : startingServers.values()) {
+            startingServer.cancelWatch();
+        }
+        startingServers.clear();
+    }
+
+    /**
+     * This method submits the start of a server to the {@link StartScheduler}.
+     * The start signal is sent and the readiness watcher is created once the node of the server has a free start slot.
+     * If the server was already submitted, for example by pre-warming, only the readiness watcher is created.
+     */
+    private void begin(StartingServer startingServer) {
+        boolean submitted = plugin.getStartScheduler().submit(startingServer.serverName, startingServer::size,
+                position -> onQueuePosition(startingServer, position), () -> sendStart(startingServer));
+        if (!submitted) {
+            watch(startingServer);
+        }
+    }
+
+    private void sendStart(StartingServer startingServer) {
+        if (startingServer.isReady()) {
+            return;
+        }
+        logger.info("Starting server: " + startingServer.serverName);
+        startingServer.startedAt = System.nanoTime();
+        plugin.getAPIClient().powerServerAsync(startingServer.serverId, "start").exceptionally(throwable -> {
+            logger.error("Error powering server.", throwable);
+            return null;
+        });
+        watch(startingServer);
+    }
+
+    private void watch(StartingServer startingServer) {
+        if (plugin.getStatusSubscriber().isEnabled()) {
+            plugin.getStatusSubscriber().awaitState(startingServer.serverId, ServerState.RUNNING)
+                    .thenAccept(state -> onPanelRunning(startingServer));
+        }
+        scheduleCheck(startingServer, 5000);
+    }
+
+    /**
+     * This method tells the waiting players the position of the start of their server in the start queue.
+     * Once a queued start runs, the players are told that the server is starting now.
+     */
+    private void onQueuePosition(StartingServer startingServer, int position) {
+        String text;
+        if (position > 0) {
+            startingServer.queued = true;
+            text = "] " + startingServer.serverName + " is waiting to start, position " + position + " in the start queue";
+        } else if (startingServer.queued) {
+            text = "] Starting server: " + startingServer.serverName;
+        } else {
+            return;
+        }
+        for (Player player : startingServer.getWaitingPlayers()) {
+            player.sendMessage(
+                Component.text("[", NamedTextColor.WHITE)
+                .append(Component.text("VPP", TextColor.color(66,135,245)))
+                .append(Component.text(text, NamedTextColor.WHITE)));
+        }
+    }
+
+    /**
+     * This method is called once the panel reports a starting server as running.
+     * Unless only the panel state is checked, the server is pinged right away.
+     */
+    private void onPanelRunning(StartingServer startingServer) {
+        startingServer.panelRunning = true;
+        if (configurationManager.getReadinessMode() == ReadinessMode.PANEL) {
+            onReady(startingServer);
+            return;
+        }
+        startingServer.cancelWatch();
+        check(startingServer);
+    }
+
+    /**
+     * This method schedules the next readiness check of a starting server.
+     * With adaptive polling, the delay is taken from the learned startup duration of the server,
+     * so the checks are sparse early in the startup and dense around the expected ready time.
+     * If the time of the start signal is not known, the fallback delay is used.
+     * Once the panel reports the server as running, only the ping is left, so the server is checked every PING_INTERVAL.
+     *
+     * @param startingServer the starting server
+     * @param fallbackMillis the delay to use if no startup duration has been learned, in milliseconds
+     */
+    private void scheduleCheck(StartingServer startingServer, long fallbackMillis) {
+        if (startingServer.isReady()) {
+            return;
+        }
+        if (startingServer.startedAt == 0) {
+            // The start was sent elsewhere, for example by pre-warming, so its duration is measured from the start slot.
+            startingServer.startedAt = plugin.getStartScheduler().getStartedAt(startingServer.serverName);
+        }
+        long delay = fallbackMillis;
+        if (startingServer.panelRunning) {
+            delay = PING_INTERVAL;
+        } else if (configurationManager.isAdaptivePolling() && startingServer.startedAt != 0) {
+            delay = durationTracker.nextProbeDelay(startingServer.serverName, startingServer.elapsedMillis(), fallbackMillis);
+        }
+        startingServer.cancelWatch();
+        startingServer.watchTask = proxyServer.getScheduler().buildTask(plugin, () -> check(startingServer))
+                .delay(delay, TimeUnit.MILLISECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method checks if a starting server is ready.
+     * Depending on the readiness mode the panel state and a ping are checked at the same time,
+     * and the server is only ready once all of them succeed.
+     * Only one check of a server runs at a time.
+     */
+    private void check(StartingServer startingServer) {
+        if (startingServer.isReady() || !startingServer.checking.compareAndSet(false, true)) {
+            return;
+        }
+        if (isTimedOut(startingServer)) {
+            startingServer.checking.set(false);
+            expire(startingServer);
+            return;
+        }
+        long delay = TimeUnit.SECONDS.toMillis(configurationManager.getStartupJoinDelay());
+        ReadinessMode mode = configurationManager.getReadinessMode();
+        CompletableFuture<Boolean> panelCheck = mode == ReadinessMode.PING ? CompletableFuture.completedFuture(true) : checkPanel(startingServer);
+        CompletableFuture<Boolean> pingCheck = mode == ReadinessMode.PANEL ? CompletableFuture.completedFuture(true) : checkPing(startingServer);
+        panelCheck.thenCombine(pingCheck, (panelReady, pingReady) -> panelReady && pingReady)
+                .exceptionally(throwable -> false)
+                .thenAccept(ready -> {
+                    startingServer.checking.set(false);
+                    if (ready) {
+                        onReady(startingServer);
+                    } else {
+                        scheduleCheck(startingServer, delay);
+                    }
+                });
+    }
+
+    /**
+     * This method checks if the panel reports a starting server as running.
+     * While the websocket of the server is open, the panel is not polled, the websocket reports the state instead.
+     */
+    private CompletableFuture<Boolean> checkPanel(StartingServer startingServer) {
+        if (startingServer.panelRunning) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (plugin.getStatusSubscriber().isSubscribed(startingServer.serverId)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        probes.increment();
+        return plugin.getAPIClient().getServerStateAsync(startingServer.serverId, RequestPriority.BACKGROUND).handle((state, throwable) -> {
+            if (state == ServerState.RUNNING) {
+                startingServer.panelRunning = true;
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * This method checks if a starting server answers a ping, which means it accepts logins.
+     */
+    private CompletableFuture<Boolean> checkPing(StartingServer startingServer) {
+        Optional<RegisteredServer> server = proxyServer.getServer(startingServer.serverName);
+        if (server.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        pings.increment();
+        PingOptions options = PingOptions.builder()
+                .timeout(Duration.ofMillis(Math.max(100, configurationManager.getPingTimeout())))
+                .build();
+        return server.get().ping(options).handle((ping, throwable) -> throwable == null);
+    }
+
+    /**
+     * This method returns whether a starting server has not become ready within the start timeout.
+     * The time is counted from the start signal, or from the creation of the queue if the start was sent elsewhere.
+     * A start that still waits in the start queue does not time out.
+     */
+    private boolean isTimedOut(StartingServer startingServer) {
+        long timeout = TimeUnit.SECONDS.toNanos(configurationManager.getStartSlotTimeout());
+        if (timeout <= 0) {
+            return false;
+        }
+        if (startingServer.startedAt != 0) {
+            return System.nanoTime() - startingServer.startedAt > timeout;
+        }
+        return !plugin.getStartScheduler().isPending(startingServer.serverName)
+                && System.nanoTime() - startingServer.createdAt > timeout;
+    }
+
+    /**
+     * This method gives up on a server that did not become ready in time.
+     * The waiting players are told and dropped, so the queue does not keep them forever.
+     */
+    private void expire(StartingServer startingServer) {
+        startingServers.remove(startingServer.serverName, startingServer);
+        if (!startingServer.markReady()) {
+            return;
+        }
+        startingServer.cancelWatch();
+        plugin.getStartScheduler().release(startingServer.serverName);
+        List<Player> players = startingServer.getWaitingPlayers();
+        startingServer.clear();
+        logger.warn("Server " + startingServer.serverName + " did not become ready in time, dropping " + players.size() + " waiting players");
+        for (Player player : players) {
+            player.sendMessage(
+                Component.text("[", NamedTextColor.WHITE)
+                .append(Component.text("VPP", TextColor.color(66,135,245)))
+                .append(Component.text("] " + startingServer.serverName + " did not start in time, please try again later", NamedTextColor.WHITE)));
+        }
+        scheduleShutdownIfEmpty(startingServer.serverName);
+    }
+
+    private void onReady(StartingServer startingServer) {
+        if (!startingServer.markReady()) {
+            return;
+        }
+        startingServers.remove(startingServer.serverName, startingServer);
+        startingServer.cancelWatch();
+        plugin.getStartScheduler().release(startingServer.serverName);
+        if (startingServer.startedAt != 0) {
+            durationTracker.record(startingServer.serverName, startingServer.elapsedMillis());
+        }
+        logger.info("Server " + startingServer.serverName + " is running, connecting " + startingServer.size() + " waiting players");
+
+        Optional<RegisteredServer> server = proxyServer.getServer(startingServer.serverName);
+        if (server.isEmpty()) {
+            logger.warn("Server '" + startingServer.serverName + "' is not registered in Velocity.");
+            return;
+        }
+        connectQueue(startingServer, server.get());
+    }
+
+    /**
+     * This method connects the waiting players in batches of the configured size.
+     * If none of the players could be connected, the server is scheduled for shutdown.
+     */
+    private void connectQueue(StartingServer startingServer, RegisteredServer server) {
+        int batchSize = Math.max(1, configurationManager.getConnectBatchSize());
+        long interval = Math.max(50, configurationManager.getConnectBatchInterval());
+        AtomicReference<ScheduledTask> task = new AtomicReference<>();
+        boolean[] connectedAny = {false};
+        task.set(proxyServer.getScheduler().buildTask(plugin, () -> {
+            int connected = 0;
+            while (connected < batchSize) {
+                Player player = startingServer.poll();
+                if (player == null) {
+                    ScheduledTask scheduledTask = task.get();
+                    if (scheduledTask != null) {
+                        scheduledTask.cancel();
+                    }
+                    if (!connectedAny[0]) {
+                        scheduleShutdownIfEmpty(startingServer.serverName);
+                    }
+                    return;
+                }
+                if (connectPlayer(player, server)) {
+                    connected++;
+                    connectedAny[0] = true;
+                }
+            }
+        }).repeat(interval, TimeUnit.MILLISECONDS).schedule());
+    }
+
+    /**
+     * This method connects a player to a server that is running.
+     * Players that left the proxy, are not on any server or are already on the server are skipped.
+     *
+     * @param player the player to connect
+     * @param server the server to connect the player to
+     * @return true if a connection request was sent, false otherwise
+     */
+    private boolean connectPlayer(Player player, RegisteredServer server) {
+        if (!player.isActive() || player.getCurrentServer().isEmpty()) {
+            return false;
+        }
+        // Check if the player is already connected to the server
+        if (player.getCurrentServer().get().getServerInfo().getName().equals(server.getServerInfo().getName())) {
+            return false;
+        }
+        player.createConnectionRequest(server).fireAndForget();
+        return true;
+    }
+
+    private void scheduleShutdownIfEmpty(String serverName) {
+        PteroServerInfo serverInfo = configurationManager.getServerInfoMap().get(serverName);
+        if (serverInfo != null && plugin.getAPIClient().isServerEmpty(serverName)) {
+            plugin.scheduleServerShutdown(serverName, serverInfo.getServerId(), serverInfo.getTimeout());
+        }
+    }
+
+    /**
+     * This class holds the readiness watcher and the waiting players of a starting server.
+     */
+    private static final class StartingServer {
+        private final String serverName;
+        private final String serverId;
+        private final long createdAt = System.nanoTime();
+        private volatile long startedAt;
+        private volatile boolean queued;
+        private final Set<Player> waitingPlayers = new LinkedHashSet<>();
+        private boolean ready;
+        private final AtomicBoolean checking = new AtomicBoolean();
+        private volatile boolean panelRunning;
+        private volatile ScheduledTask watchTask;
+
+        private StartingServer(String serverName, String serverId) {
+            this.serverName = serverName;
+            this.serverId = serverId;
+        }
+
+        private synchronized boolean add(Player player) {
+            if (ready) {
+                return false;
+            }
+            waitingPlayers.add(player);
+            return true;
+        }
+
+        private synchronized void remove(Player player) {
+            waitingPlayers.remove(player);
+        }
+
+        private synchronized Player poll() {
+            Iterator<Player> iterator = waitingPlayers.iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Player player = iterator.next();
+            iterator.remove();
+            return player;
+        }
+
+        private synchronized void clear() {
+            waitingPlayers.clear();
+        }
+
+        private synchronized List<Player> getWaitingPlayers() {
+            return new ArrayList<>(waitingPlayers);
+        }
+
+        private synchronized int size() {
+            return waitingPlayers.size();
+        }
+
+        private synchronized boolean isReady() {
+            return ready;
+        }
+
+        private synchronized boolean markReady() {
+            if (ready) {
+                return false;
+            }
+            ready = true;
+            return true;
+        }
+
+        private long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        }
+
+        private void cancelWatch() {
+            ScheduledTask task = watchTask;
+            if (task != null) {
+                task.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class learns how long the servers take from the start signal until they are running.
+ * It keeps an exponentially weighted moving average and variance of the startup duration per server,
+ * which is used to probe the panel rarely at the beginning of a startup and often around the expected ready time.
+ */
+public class StartupDurationTracker {
+    private static final double ALPHA = 0.3;
+    private static final long MIN_PROBE_INTERVAL = 1000;
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * This method records the duration of a completed startup.
+     *
+     * @param serverName the name of the server
+     * @param durationMillis the time from the start signal until the server was running, in milliseconds
+     */
+    public void record(String serverName, long durationMillis) {
+        if (durationMillis <= 0) {
+            return;
+        }
+        estimates.compute(serverName, (name, estimate) -> estimate == null ? new Estimate(durationMillis) : estimate.update(durationMillis));
+    }
+
+    /**
+     * This method returns the expected startup duration of a server.
+     *
+     * @param serverName the name of the server
+     * @return the expected duration in milliseconds, or empty if no startup has been recorded yet
+     */
+    public OptionalLong getExpectedDuration(String serverName) {
+        Estimate estimate = estimates.get(serverName);
+        return estimate == null ? OptionalLong.empty() : OptionalLong.of(Math.round(estimate.mean));
+    }
+
+    /**
+     * This method returns the delay until the next readiness probe of a starting server.
+     * Before the expected ready window the probe is scheduled for the start of the window,
+     * inside the window the server is probed in short intervals,
+     * and once the window has passed the fallback interval is used again.
+     * Without a recorded startup the fallback interval is always used.
+     *
+     * @param serverName the name of the server
+     * @param elapsedMillis the time since the start signal, in milliseconds
+     * @param fallbackMillis the interval to use if nothing better is known, in milliseconds
+     * @return the delay until the next probe in milliseconds
+     */
+    public long nextProbeDelay(String serverName, long elapsedMillis, long fallbackMillis) {
+        Estimate estimate = estimates.get(serverName);
+        if (estimate == null) {
+            return Math.max(MIN_PROBE_INTERVAL, fallbackMillis);
+        }
+        double deviation = Math.max(estimate.deviation(), Math.max(MIN_PROBE_INTERVAL, estimate.mean * 0.1));
+        double windowStart = estimate.mean - 2 * deviation;
+        double windowEnd = estimate.mean + 2 * deviation;
+        if (elapsedMillis < windowStart) {
+            return Math.max(MIN_PROBE_INTERVAL, Math.round(windowStart - elapsedMillis));
+        }
+        if (elapsedMillis < windowEnd) {
+            return Math.max(MIN_PROBE_INTERVAL, Math.min(fallbackMillis, Math.round(deviation / 2)));
+        }
+        return Math.max(MIN_PROBE_INTERVAL, fallbackMillis);
+    }
+
+    /**
+     * This method returns the amount of servers with a recorded startup.
+     *
+     * @return the amount of servers
+     */
+    public int size() {
+        return estimates.size();
+    }
+
+    /**
+     * This class holds the moving average and variance of the startup duration of a server.
+     */
+    private static final class Estimate {
+        private final double mean;
+        private final double variance;
+
+        private Estimate(double duration) {
+            this(duration, 0);
+        }
+
+        private Estimate(double mean, double variance) {
+            this.mean = mean;
+            this.variance = variance;
+        }
+
+        private Estimate update(double duration) {
+            double difference = duration - mean;
+            double increment = ALPHA * difference;
+            return new Estimate(mean + increment, (1 - ALPHA) * (variance + difference * increment));
+        }
+
+        private double deviation() {
+            return Math.sqrt(variance);
+        }
+    }
+}
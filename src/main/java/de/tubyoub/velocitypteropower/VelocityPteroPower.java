@@ -26,18 +26,25 @@ package de.tubyoub.velocitypteropower;
 
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.player.ServerPreConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import de.tubyoub.velocitypteropower.api.PanelAPIClient;
+import de.tubyoub.velocitypteropower.api.PanelTransport;
 import de.tubyoub.velocitypteropower.api.PanelType;
 import de.tubyoub.velocitypteropower.api.PelicanAPIClient;
 import de.tubyoub.velocitypteropower.api.PterodactylAPIClient;
+import de.tubyoub.velocitypteropower.api.ResilientPanelAPIClient;
+import de.tubyoub.velocitypteropower.api.ServerState;
+import de.tubyoub.velocitypteropower.api.ServerStateCache;
+import de.tubyoub.velocitypteropower.api.ServerStatusSubscriber;
 import de.tubyoub.velocitypteropower.libs.Metrics;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -48,9 +55,8 @@ import net.kyori.adventure.text.minimessage.MiniMessage;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Main class for the VelocityPteroPower plugin.
@@ -63,12 +69,26 @@ public class VelocityPteroPower {
     private final ProxyServer proxyServer;
     private final ComponentLogger logger;
     private final Path dataDirectory;
-    private Map<String, PteroServerInfo> serverInfoMap;
     private final CommandManager commandManager;
     private final ConfigurationManager configurationManager;
     private PanelAPIClient apiClient;
+    private PanelTransport panelTransport;
+    private ServerStateCache serverStateCache;
+    private ServerStatusSubscriber statusSubscriber;
+    private OccupancyTracker occupancyTracker;
+    private AntiFlapPolicy antiFlapPolicy;
+    private ShutdownPipeline shutdownPipeline;
+    private IdleTracker idleTracker;
+    private StartScheduler startScheduler;
+    private MemoryPressureManager memoryPressureManager;
+    private ConfigWatcher configWatcher;
+    private StartupCoordinator startupCoordinator;
+    private PrewarmScheduler prewarmScheduler;
+    private ServerGroupManager groupManager;
+    private LimboManager limboManager;
+    private DestinationPredictor destinationPredictor;
     private final Metrics.Factory metricsFactory;
-    private final Set<String> startingServers = ConcurrentHashMap.newKeySet();
+    private final StatisticsRegistry statistics = new StatisticsRegistry();
 
     /**
      * Constructor for the VelocityPteroPower class.
@@ -105,18 +125,47 @@ public class VelocityPteroPower {
         logger.info(MiniMessage.miniMessage().deserialize("<#4287f5>  \\     /   |    |    |    |"+ "<#00ff77>         VelocityPteroPower <#6b6c6e>v" + version));
         logger.info(MiniMessage.miniMessage().deserialize("<#4287f5>   \\___/    |____|tero|____|ower" + "<#A9A9A9>     Running with Blackmagic on Velocity"));
         configurationManager.loadConfig();
+        this.panelTransport = new PanelTransport(this);
+        this.occupancyTracker = new OccupancyTracker(this);
+        occupancyTracker.start();
+        PanelAPIClient panelClient;
         if (configurationManager.getPanelType() == PanelType.pelican) {
             logger.info("detected the pelican panel");
-            this.apiClient = new PelicanAPIClient(this);
+            panelClient = new PelicanAPIClient(this);
         } else {
             logger.info("detected the pterodactyl panel");
-            this.apiClient = new PterodactylAPIClient(this);
+            panelClient = new PterodactylAPIClient(this);
         }
+        this.serverStateCache = new ServerStateCache(this, new ResilientPanelAPIClient(this, panelClient));
+        this.apiClient = serverStateCache;
+        serverStateCache.start();
+        this.statusSubscriber = new ServerStatusSubscriber(this);
+        statusSubscriber.addListener(serverStateCache::update);
+        statusSubscriber.start();
+        this.antiFlapPolicy = new AntiFlapPolicy(this);
+        this.shutdownPipeline = new ShutdownPipeline(this);
+        this.idleTracker = new IdleTracker(this);
+        idleTracker.start();
+        this.startScheduler = new StartScheduler(this);
+        startScheduler.start();
+        this.startupCoordinator = new StartupCoordinator(this);
+        this.prewarmScheduler = new PrewarmScheduler(this);
+        prewarmScheduler.start();
+        this.groupManager = new ServerGroupManager(this);
+        groupManager.start();
+        this.limboManager = new LimboManager(this);
+        limboManager.start();
+        this.destinationPredictor = new DestinationPredictor(this);
+        destinationPredictor.start();
+        this.memoryPressureManager = new MemoryPressureManager(this);
+        memoryPressureManager.start();
+        this.configWatcher = new ConfigWatcher(this);
+        configWatcher.start();
 
         commandManager.register("ptero", new PteroCommand(this));
         proxyServer.getEventManager().register(this,new ServerSwitchListener(this));
+        proxyServer.getEventManager().register(this, destinationPredictor);
 
-        this.serverInfoMap = configurationManager.getServerInfoMap();
         Metrics metrics = metricsFactory.make(this, pluginId);
         logger.info("VelocityPteroPower succesfully loaded");
         if (configurationManager.isCheckUpdate()){
@@ -126,8 +175,59 @@ public class VelocityPteroPower {
         }
     }
 
+    /**
+     * This method is called when the proxy server shuts down.
+     * It closes the websockets, saves the join history and the last servers of the players, stops the background refresh of the state cache and releases the threads of the panel transport.
+     *
+     * @param event the proxy shutdown event
+     */
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        if (startupCoordinator != null) {
+            startupCoordinator.stop();
+        }
+        if (startScheduler != null) {
+            startScheduler.stop();
+        }
+        if (idleTracker != null) {
+            idleTracker.stop();
+        }
+        if (occupancyTracker != null) {
+            occupancyTracker.stop();
+        }
+        if (memoryPressureManager != null) {
+            memoryPressureManager.stop();
+        }
+        if (configWatcher != null) {
+            configWatcher.stop();
+        }
+        if (prewarmScheduler != null) {
+            prewarmScheduler.stop();
+        }
+        if (groupManager != null) {
+            groupManager.stop();
+        }
+        if (limboManager != null) {
+            limboManager.stop();
+        }
+        if (destinationPredictor != null) {
+            destinationPredictor.stop();
+        }
+        if (statusSubscriber != null) {
+            statusSubscriber.stop();
+        }
+        if (serverStateCache != null) {
+            serverStateCache.stop();
+        }
+        if (panelTransport != null) {
+            panelTransport.shutdown();
+        }
+    }
+
     /**
      * This method schedules a server shutdown if the server is empty.
+     * The deadline is held by the {@link IdleTracker}, which replaces an earlier deadline of the server.
+     * The {@link AntiFlapPolicy} may extend the timeout of servers that are often started again shortly after being stopped.
      *
      * @param serverName the name of the server
      * @param serverID the ID of the server
@@ -137,33 +237,39 @@ public class VelocityPteroPower {
             if (timeout < 0) {
                 return;
             }
-            logger.info("Scheduling server shutdown for " + serverName + " in " + timeout + " seconds.");
-            proxyServer.getScheduler().buildTask(this, () -> {
-                if (apiClient.isServerEmpty(serverName)) {
-                    apiClient.powerServer(serverID, "stop");
-                    logger.info("Shutting down server: " + serverName);
-                }else {
-                    logger.info("Shutdown cancelled for server: " + serverName + ". Players are present.");
-                }
-            }).delay(timeout, TimeUnit.SECONDS).schedule();
+            int extendedTimeout = antiFlapPolicy.getEffectiveTimeout(serverName, timeout);
+            if (extendedTimeout > timeout) {
+                logger.info("Scheduling server shutdown for " + serverName + " in " + extendedTimeout + " seconds, extended from " + timeout + " seconds because it was started again shortly after earlier stops.");
+            } else {
+                logger.info("Scheduling server shutdown for " + serverName + " in " + timeout + " seconds.");
+            }
+            idleTracker.arm(serverName, serverID, timeout, extendedTimeout);
         }
      /**
      * This method is called when a player tries to connect to a server.
      * It checks if the server is online and starts it if it is not.
-     * If the server is already starting, it sends a message to the player and denies the connection.
-     * If the server is offline, it starts the server, sends a message to the player, denies the connection,
-     * and schedules a task to check if the server is online and connect the player.
+     * The status check runs asynchronously, the event is only resumed once the panel has answered,
+     * so the event thread never waits on the panel.
      *
      * @param event the server pre-connect event
+     * @return the event task that completes once the connection has been handled
      */
     @Subscribe
-    public void onServerPreConnect(ServerPreConnectEvent event) {
+    public EventTask onServerPreConnect(ServerPreConnectEvent event) {
         Player player = event.getPlayer();
         String serverName = event.getOriginalServer().getServerInfo().getName();
-        this.serverInfoMap = configurationManager.getServerInfoMap();
+        Map<String, PteroServerInfo> serverInfoMap = configurationManager.getServerInfoMap();
         PteroServerInfo serverInfo = serverInfoMap.get(serverName);
 
-
+        Optional<ServerGroup> group = groupManager.getGroup(serverName);
+        if (group.isPresent()) {
+            return EventTask.resumeWhenComplete(groupManager.route(group.get())
+                    .exceptionally(throwable -> {
+                        logger.error("Error routing to group: " + serverName, throwable);
+                        return Optional.empty();
+                    })
+                    .thenAccept(route -> handleGroupPreConnect(event, player, group.get(), route)));
+        }
 
         if (!serverInfoMap.containsKey(serverName)) {
             logger.warn("Server '" + serverName + "' not found in configuration.");
@@ -171,87 +277,168 @@ public class VelocityPteroPower {
                 Component.text("[", NamedTextColor.WHITE)
                 .append(Component.text("VPP", TextColor.color(66,135,245)))
                 .append(Component.text("] Server not found in configuration: " + serverName, NamedTextColor.WHITE)));
+            return null;
+        }
+        prewarmScheduler.recordJoin(serverName);
+        return EventTask.resumeWhenComplete(apiClient.getServerStateAsync(serverInfo.getServerId())
+                .exceptionally(throwable -> {
+                    logger.error("Error checking the status of server: " + serverName, throwable);
+                    return ServerState.UNKNOWN;
+                })
+                .thenAccept(state -> handleServerPreConnect(event, player, serverName, serverInfo, state)));
+    }
+
+    /**
+     * This method handles a pre-connect event once the state of the target server is known.
+     * If the state is unknown because the panel is unavailable, the connection is let through without starting the server.
+     * Otherwise the player is held by the {@link LimboManager} and added to the queue of the {@link StartupCoordinator},
+     * which starts the server if it is not starting yet and connects the player once it is running.
+     *
+     * @param event the server pre-connect event
+     * @param player the player that is connecting
+     * @param serverName the name of the server
+     * @param serverInfo the configuration of the server
+     * @param state the state of the server
+     */
+    private void handleServerPreConnect(ServerPreConnectEvent event, Player player, String serverName, PteroServerInfo serverInfo, ServerState state) {
+        if (state == ServerState.UNKNOWN) {
+            // The panel could not tell the state, so the server is not started blindly and the connection is attempted as usual
+            logger.warn("The state of server " + serverName + " is unknown, letting the connection through");
             return;
         }
-        if (apiClient.isServerOnline(serverInfo.getServerId())) {
-            if (startingServers.contains(serverName)){
-                startingServers.remove(serverName);
-            }
+        if (state == ServerState.RUNNING) {
+            startupCoordinator.onServerRunning(serverName);
             return;
         }
-        if (startingServers.contains(serverName)){
+        limboManager.hold(event, player);
+        queueForStart(player, serverName, serverInfo);
+    }
+
+    /**
+     * This method handles a pre-connect event to a server group once a member has been selected.
+     * If the member is running, the player is sent there directly.
+     * Otherwise the player is held by the {@link LimboManager} until the member has started.
+     * If all members are full or unavailable, the connection is denied and the player is told which of the two it is.
+     *
+     * @param event the server pre-connect event
+     * @param player the player that is connecting
+     * @param group the group the player connects to
+     * @param route the selected member, or empty if there is none
+     */
+    private void handleGroupPreConnect(ServerPreConnectEvent event, Player player, ServerGroup group, Optional<ServerGroupManager.GroupRoute> route) {
+        Optional<RegisteredServer> server = route.flatMap(selected -> proxyServer.getServer(selected.serverName()));
+        if (server.isEmpty()) {
+            String text = groupManager.hasRunningMember(group)
+                    ? "] All servers of " + group.getName() + " are full"
+                    : "] The servers of " + group.getName() + " are unavailable right now, please try again later";
             player.sendMessage(
                 Component.text("[", NamedTextColor.WHITE)
                 .append(Component.text("VPP", TextColor.color(66,135,245)))
-                .append(Component.text("] " +  serverName +" is already starting", NamedTextColor.WHITE)));
+                .append(Component.text(text, NamedTextColor.WHITE)));
             event.setResult(ServerPreConnectEvent.ServerResult.denied());
             return;
         }
-
-        startingServers.add(serverName);
-        apiClient.powerServer(serverInfo.getServerId(), "start");
-        player.sendMessage(
-                Component.text("[", NamedTextColor.WHITE)
-                .append(Component.text("VPP", TextColor.color(66,135,245)))
-                .append(Component.text("] Starting server: " + serverName, NamedTextColor.WHITE)));
-        event.setResult(ServerPreConnectEvent.ServerResult.denied());
-
-        proxyServer.getScheduler().buildTask(this, () -> {
-            if (apiClient.isServerOnline(serverInfo.getServerId())) {
-                connectPlayer(player, serverName);
-            } else {
-                proxyServer.getScheduler().buildTask(this, () -> checkServerAndConnectPlayer(player, serverName)).schedule();
-            }
-        }).delay(5, TimeUnit.SECONDS).schedule();
-        }
-
-    private void checkServerAndConnectPlayer(Player player, String serverName) {
-        PteroServerInfo serverInfo = serverInfoMap.get(serverName);
-        if (apiClient.isServerOnline(serverInfo.getServerId())) {
-            connectPlayer(player, serverName);
-        } else {
-            proxyServer.getScheduler().buildTask(this, () -> checkServerAndConnectPlayer(player, serverName)).delay(configurationManager.getStartupJoinDelay(), TimeUnit.SECONDS).schedule();
+        if (route.get().running()) {
+            event.setResult(ServerPreConnectEvent.ServerResult.allowed(server.get()));
+            return;
         }
+        limboManager.hold(event, player);
+        String serverName = route.get().serverName();
+        queueForStart(player, serverName, configurationManager.getServerInfoMap().get(serverName));
     }
 
-     /**
-     * This method connects a player to a server.
-     * It first retrieves the server by its name. If the server is not found, it throws a RuntimeException.
-     * If the player is not currently connected to any server and the target server is empty, it schedules a shutdown for the server.
-     * If the player is already connected to the target server, it does nothing.
-     * If the target server is online, it sends a connection request to the player and removes the server from the startingServers set.
+    /**
+     * This method adds a player to the queue of a server that is not running and tells the player about it.
      *
-     * @param player the player to connect
+     * @param player the player that wants to join the server
      * @param serverName the name of the server
+     * @param serverInfo the configuration of the server
      */
-    private void connectPlayer(Player player, String serverName) {
-        RegisteredServer server = proxyServer.getServer(serverName).orElseThrow(() -> new RuntimeException("Server not found: " + serverName));
-
-        if (!player.getCurrentServer().isPresent()) {
-            if (apiClient.isServerEmpty(serverName)){
-                this.scheduleServerShutdown(serverName, serverInfoMap.get(serverName).getServerId(),serverInfoMap.get(serverName).getTimeout());
-            }
+    private void queueForStart(Player player, String serverName, PteroServerInfo serverInfo) {
+        boolean alreadyStarting = startupCoordinator.queuePlayer(serverName, serverInfo, player);
+        int position = startScheduler.getQueuePosition(serverName);
+        if (position > 0) {
+            player.sendMessage(
+                Component.text("[", NamedTextColor.WHITE)
+                .append(Component.text("VPP", TextColor.color(66,135,245)))
+                .append(Component.text("] " + serverName + " is waiting to start, position " + position + " in the start queue", NamedTextColor.WHITE)));
             return;
         }
-        // Check if the player is already connected to the server
-        if (player.getCurrentServer().get().getServerInfo().getName().equals(serverName)) {
+        if (alreadyStarting) {
+            player.sendMessage(
+                Component.text("[", NamedTextColor.WHITE)
+                .append(Component.text("VPP", TextColor.color(66,135,245)))
+                .append(Component.text("] " +  serverName +" is already starting", NamedTextColor.WHITE)));
             return;
         }
-
-        if (apiClient.isServerOnline(serverInfoMap.get(serverName).getServerId())) {
-            player.createConnectionRequest(server).fireAndForget();
-            startingServers.remove(serverName);
-        }
+        player.sendMessage(
+                Component.text("[", NamedTextColor.WHITE)
+                .append(Component.text("VPP", TextColor.color(66,135,245)))
+                .append(Component.text("] Starting server: " + serverName, NamedTextColor.WHITE)));
     }
 
     /**
      * This method reloads the configuration for the VelocityPteroPower plugin.
-     * It calls the loadConfig method of the ConfigurationManager instance to reload the configuration.
-     * It then updates the serverInfoMap with the new configuration.
+     * The content should have been validated before, see {@link ConfigWatcher#reload()}.
+     * It calls the loadConfig method of the ConfigurationManager instance with the content,
+     * and if the content can not be loaded, the previous configuration stays in effect and nothing is reset.
+     * The servers of the new configuration are compared with the previous ones,
+     * and only the shutdown deadlines, cached states and websockets of servers that were removed or changed are reset.
+     * If the panel connection changed, the cached states and websockets of all servers are reset.
+     *
+     * @param content the content of the configuration file
+     * @return the content of the configuration file after the reload, or null if the previous configuration stays in effect
      */
-    public void reloadConfig() {
-        configurationManager.loadConfig();
-        this.serverInfoMap = configurationManager.getServerInfoMap();
+    public byte[] reloadConfig(byte[] content) {
+        ConfigSnapshot previous = configurationManager.getSnapshot();
+        byte[] applied = configurationManager.loadConfig(content);
+        if (applied == null) {
+            return null;
+        }
+        ConfigSnapshot current = configurationManager.getSnapshot();
+        ConfigSnapshot.Diff diff = current.diff(previous);
+        boolean panelChanged = !Objects.equals(previous.settings().panelUrl, current.settings().panelUrl)
+                || !Objects.equals(previous.settings().apiKey, current.settings().apiKey)
+                || previous.settings().websocketEnabled != current.settings().websocketEnabled;
+
+        panelTransport.reload();
+        if (panelChanged) {
+            serverStateCache.invalidateAll();
+            statusSubscriber.start();
+        }
+        for (String serverName : diff.removed()) {
+            String serverId = previous.servers().get(serverName).getServerId();
+            idleTracker.discard(serverName);
+            startScheduler.release(serverName);
+            serverStateCache.invalidate(serverId);
+            statusSubscriber.unsubscribe(serverId);
+        }
+        for (String serverName : diff.changed()) {
+            String previousId = previous.servers().get(serverName).getServerId();
+            PteroServerInfo serverInfo = current.servers().get(serverName);
+            if (!previousId.equals(serverInfo.getServerId())) {
+                serverStateCache.invalidate(previousId);
+                statusSubscriber.unsubscribe(previousId);
+            }
+            if (idleTracker.isArmed(serverName)) {
+                if (serverInfo.getTimeout() < 0) {
+                    idleTracker.discard(serverName);
+                } else {
+                    scheduleServerShutdown(serverName, serverInfo.getServerId(), serverInfo.getTimeout());
+                }
+            }
+        }
+        logger.info("Reloaded the configuration: " + diff.added().size() + " servers added, "
+                + diff.removed().size() + " removed, " + diff.changed().size() + " changed");
+
+        serverStateCache.start();
+        startScheduler.start();
+        prewarmScheduler.start();
+        groupManager.start();
+        limboManager.start();
+        memoryPressureManager.start();
+        configWatcher.start();
+        return applied;
     }
     /**
      * This method returns the map of server names to PteroServerInfo objects.
@@ -259,7 +446,7 @@ public class VelocityPteroPower {
      * @return the map of server names to PteroServerInfo objects
      */
     public Map<String, PteroServerInfo> getServerInfoMap() {
-        return serverInfoMap;
+        return configurationManager.getServerInfoMap();
     }
 
     /**
@@ -298,6 +485,150 @@ public class VelocityPteroPower {
         return apiClient;
     }
 
+    /**
+     * Returns the PanelTransport instance shared by the API clients.
+     *
+     * @return the PanelTransport instance
+     */
+    public PanelTransport getPanelTransport() {
+        return panelTransport;
+    }
+
+    /**
+     * Returns the ServerStateCache instance that caches the server states of the panel.
+     *
+     * @return the ServerStateCache instance
+     */
+    public ServerStateCache getServerStateCache() {
+        return serverStateCache;
+    }
+
+    /**
+     * Returns the ServerStatusSubscriber instance that receives server states through the websocket.
+     *
+     * @return the ServerStatusSubscriber instance
+     */
+    public ServerStatusSubscriber getStatusSubscriber() {
+        return statusSubscriber;
+    }
+
+    /**
+     * Returns the OccupancyTracker instance that counts the players on every server.
+     *
+     * @return the OccupancyTracker instance
+     */
+    public OccupancyTracker getOccupancyTracker() {
+        return occupancyTracker;
+    }
+
+    /**
+     * Returns the AntiFlapPolicy instance that extends the timeout of bouncing servers.
+     *
+     * @return the AntiFlapPolicy instance
+     */
+    public AntiFlapPolicy getAntiFlapPolicy() {
+        return antiFlapPolicy;
+    }
+
+    /**
+     * Returns the ShutdownPipeline instance that stops servers gracefully.
+     *
+     * @return the ShutdownPipeline instance
+     */
+    public ShutdownPipeline getShutdownPipeline() {
+        return shutdownPipeline;
+    }
+
+    /**
+     * Returns the IdleTracker instance that stops servers that stayed empty until their timeout.
+     *
+     * @return the IdleTracker instance
+     */
+    public IdleTracker getIdleTracker() {
+        return idleTracker;
+    }
+
+    /**
+     * Returns the StartScheduler instance that limits the concurrent starts per panel node.
+     *
+     * @return the StartScheduler instance
+     */
+    public StartScheduler getStartScheduler() {
+        return startScheduler;
+    }
+
+    /**
+     * Returns the MemoryPressureManager instance that keeps the nodes within their memory budget.
+     *
+     * @return the MemoryPressureManager instance
+     */
+    public MemoryPressureManager getMemoryPressureManager() {
+        return memoryPressureManager;
+    }
+
+    /**
+     * Returns the ConfigWatcher instance that validates and applies configuration reloads.
+     *
+     * @return the ConfigWatcher instance
+     */
+    public ConfigWatcher getConfigWatcher() {
+        return configWatcher;
+    }
+
+    /**
+     * Returns the StartupCoordinator instance that starts servers and connects the waiting players.
+     *
+     * @return the StartupCoordinator instance
+     */
+    public StartupCoordinator getStartupCoordinator() {
+        return startupCoordinator;
+    }
+
+    /**
+     * Returns the PrewarmScheduler instance that starts servers ahead of the expected demand.
+     *
+     * @return the PrewarmScheduler instance
+     */
+    public PrewarmScheduler getPrewarmScheduler() {
+        return prewarmScheduler;
+    }
+
+    /**
+     * Returns the ServerGroupManager instance that routes players to server groups and scales them.
+     *
+     * @return the ServerGroupManager instance
+     */
+    public ServerGroupManager getGroupManager() {
+        return groupManager;
+    }
+
+    /**
+     * Returns the LimboManager instance that holds players in the limbo server while their server starts.
+     *
+     * @return the LimboManager instance
+     */
+    public LimboManager getLimboManager() {
+        return limboManager;
+    }
+
+    /**
+     * Returns the DestinationPredictor instance that starts the last server of a player at login.
+     *
+     * @return the DestinationPredictor instance
+     */
+    public DestinationPredictor getDestinationPredictor() {
+        return destinationPredictor;
+    }
+
+    /**
+     * Returns the StatisticsRegistry instance that collects the runtime statistics of the plugin.
+     *
+     * @return the StatisticsRegistry instance
+     */
+    public StatisticsRegistry getStatistics() {
+        return statistics;
+    }
+
     /**
      * Returns the ConfigurationManager instance.
      *
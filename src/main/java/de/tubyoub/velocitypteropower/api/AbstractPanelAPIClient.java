@@ -0,0 +1,335 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package de.tubyoub.velocitypteropower.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocitypowered.api.proxy.ProxyServer;
+import de.tubyoub.velocitypteropower.ConfigurationManager;
+import de.tubyoub.velocitypteropower.OccupancyTracker;
+import de.tubyoub.velocitypteropower.VelocityPteroPower;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements the client API that Pterodactyl and Pelican have in common.
+ * It includes methods to power a server, check if a server is online, and check if a server is empty.
+ * All requests go through the shared panel transport and the resources are parsed with the streaming parser.
+ */
+public abstract class AbstractPanelAPIClient implements PanelAPIClient {
+    protected static final int SERVER_LIST_PAGE_SIZE = 100;
+    private static final long STATE_LIST_RECHECK_INTERVAL = TimeUnit.HOURS.toNanos(1);
+    public final Logger logger;
+    public final ConfigurationManager configurationManager;
+    public final ProxyServer proxyServer;
+    protected final PanelTransport transport;
+    protected final OccupancyTracker occupancyTracker;
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile long listWithoutStatesSince = System.nanoTime() - STATE_LIST_RECHECK_INTERVAL;
+
+    /**
+     * Constructor for the AbstractPanelAPIClient class.
+     * It initializes the logger, configuration manager, proxy server and panel transport from the provided plugin instance.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    protected AbstractPanelAPIClient(VelocityPteroPower plugin){
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.proxyServer = plugin.getProxyServer();
+        this.transport = plugin.getPanelTransport();
+        this.occupancyTracker = plugin.getOccupancyTracker();
+    }
+
+    /**
+     * This method sends a power signal to a server and waits for the answer of the panel.
+     *
+     * @param serverId the ID of the server
+     * @param signal the power signal to send
+     */
+    @Override
+    public void powerServer(String serverId, String signal) {
+        try {
+            powerServerAsync(serverId, signal).join();
+        } catch (Exception e) {
+            logger.error("Error powering server.", e);
+        }
+    }
+
+    /**
+     * This method checks if a server is online and waits for the answer of the panel.
+     *
+     * @param serverId the ID of the server
+     * @return true if the server is online, false otherwise
+     */
+    @Override
+    public boolean isServerOnline(String serverId) {
+        try {
+            return getServerStateAsync(serverId).join() == ServerState.RUNNING;
+        } catch (Exception e) {
+            logger.error("Error checking the state of server " + serverId + ".", e);
+            return false;
+        }
+    }
+
+    /**
+     * This method sends a power signal to a server without blocking.
+     *
+     * @param serverId the ID of the server
+     * @param signal the power signal to send
+     * @return a future that completes with the answer of the panel
+     */
+    @Override
+    public CompletableFuture<PowerResult> powerServerAsync(String serverId, String signal) {
+        HttpRequest request = transport.newRequest(transport.serverUri(serverId, "power"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"signal\": \"" + signal + "\"}"))
+                .build();
+
+        return transport.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> new PowerResult(signal, response.statusCode()));
+    }
+
+    /**
+     * This method sends a command to the console of a server without blocking.
+     *
+     * @param serverId the ID of the server
+     * @param command the command to send
+     * @return a future that completes with the answer of the panel
+     */
+    @Override
+    public CompletableFuture<PowerResult> sendCommandAsync(String serverId, String command) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of("command", command));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = transport.newRequest(transport.serverUri(serverId, "command"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return transport.sendAsync(request, HttpResponse.BodyHandlers.discarding(), RequestPriority.BACKGROUND)
+                .thenApply(response -> new PowerResult(command, response.statusCode()));
+    }
+
+    /**
+     * This method requests the state of a server without blocking.
+     * Suspended servers are reported as offline.
+     *
+     * @param serverId the ID of the server
+     * @param priority the lane the request waits in if the rate limit of the panel is reached
+     * @return a future that completes with the state of the server
+     */
+    @Override
+    public CompletableFuture<ServerState> getServerStateAsync(String serverId, RequestPriority priority) {
+        return getServerResourcesAsync(serverId, priority).thenApply(ServerResources::effectiveState);
+    }
+
+    /**
+     * This method requests the state and the resource usage of a server without blocking.
+     * The body is received as a byte array and parsed with the streaming parser once it is complete.
+     * If the panel does not answer with 200, the future fails with a PanelRequestException.
+     *
+     * @param serverId the ID of the server
+     * @param priority the lane the request waits in if the rate limit of the panel is reached
+     * @return a future that completes with the resources of the server
+     */
+    @Override
+    public CompletableFuture<ServerResources> getServerResourcesAsync(String serverId, RequestPriority priority) {
+        HttpRequest request = transport.newRequest(transport.serverUri(serverId, "resources"))
+                .GET()
+                .build();
+
+        // The body is read completely before it is parsed, because parsing a streamed body would block a thread
+        // of the transport executor that is also needed to receive the rest of the body.
+        return transport.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray(), priority).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new PanelRequestException("Could not request the state of server " + serverId, response.statusCode());
+            }
+            try {
+                return ServerResources.parse(new ByteArrayInputStream(response.body()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * This method requests the states of several servers with the paginated server list of the client API.
+     * Servers that are suspended, installing or restoring a backup are known to be offline from the list alone.
+     * If the panel includes the power state in the list, it is used as well.
+     * Only servers that are missing from the list or whose state is not part of it are requested one by one.
+     * Stock panels do not include the power state, in which case reading the list costs more than it saves,
+     * so once a list without power states has been seen, the servers are requested one by one
+     * and the list is only checked again after an hour.
+     *
+     * @param serverIds the IDs of the servers
+     * @return a future that completes with a map of server IDs to their states
+     */
+    @Override
+    public CompletableFuture<Map<String, ServerState>> getServerStatesAsync(Collection<String> serverIds) {
+        if (System.nanoTime() - listWithoutStatesSince < STATE_LIST_RECHECK_INTERVAL) {
+            return PanelAPIClient.super.getServerStatesAsync(serverIds);
+        }
+        Set<String> wanted = new HashSet<>(serverIds);
+        Set<String> listed = ConcurrentHashMap.newKeySet();
+        Map<String, ServerState> states = new ConcurrentHashMap<>();
+        AtomicBoolean listHasStates = new AtomicBoolean();
+        return fetchServerList(1, wanted, listed, (serverId, attributes) -> {
+            if (attributes.path("current_state").isTextual()) {
+                listHasStates.set(true);
+            }
+            ServerState state = getListedState(attributes);
+            if (state != null) {
+                states.put(serverId, state);
+            }
+        }).thenCompose(ignored -> {
+            if (!listed.isEmpty() && !listHasStates.get()) {
+                listWithoutStatesSince = System.nanoTime();
+                logger.info("The server list of the panel does not contain the power states, the states are requested one by one");
+            }
+            List<String> remaining = wanted.stream()
+                    .filter(serverId -> !states.containsKey(serverId))
+                    .collect(Collectors.toList());
+            if (remaining.isEmpty()) {
+                return CompletableFuture.completedFuture(states);
+            }
+            return PanelAPIClient.super.getServerStatesAsync(remaining).thenApply(remainingStates -> {
+                states.putAll(remainingStates);
+                return states;
+            });
+        });
+    }
+
+    /**
+     * This method requests the nodes of several servers with the paginated server list of the client API.
+     *
+     * @param serverIds the IDs of the servers
+     * @return a future that completes with a map of server IDs to node names
+     */
+    @Override
+    public CompletableFuture<Map<String, String>> getServerNodesAsync(Collection<String> serverIds) {
+        Map<String, String> nodes = new ConcurrentHashMap<>();
+        return fetchServerList(1, new HashSet<>(serverIds), ConcurrentHashMap.newKeySet(), (serverId, attributes) -> {
+            String node = attributes.path("node").asText("");
+            if (!node.isEmpty()) {
+                nodes.put(serverId, node);
+            }
+        }).thenApply(ignored -> nodes);
+    }
+
+    /**
+     * This method reads one page of the server list and continues with the next page
+     * until every wanted server has been seen or the last page has been read.
+     * The attributes of every wanted server are passed to the visitor.
+     */
+    private CompletableFuture<Void> fetchServerList(int page, Set<String> wanted, Set<String> listed, BiConsumer<String, JsonNode> visitor) {
+        HttpRequest request = transport.newRequest(transport.uri("api/client?per_page=" + SERVER_LIST_PAGE_SIZE + "&page=" + page))
+                .GET()
+                .build();
+
+        return transport.sendAsync(request, HttpResponse.BodyHandlers.ofString(), RequestPriority.BACKGROUND).thenCompose(response -> {
+            if (response.statusCode() != 200) {
+                logger.warn("Could not read the server list of the panel, status code: " + response.statusCode());
+                return CompletableFuture.completedFuture(null);
+            }
+            JsonNode root;
+            try {
+                root = objectMapper.readTree(response.body());
+            } catch (JsonProcessingException e) {
+                logger.warn("Could not parse the server list of the panel: " + e.getMessage());
+                return CompletableFuture.completedFuture(null);
+            }
+            for (JsonNode server : root.path("data")) {
+                JsonNode attributes = server.path("attributes");
+                String serverId = attributes.path("identifier").asText();
+                if (!wanted.contains(serverId)) {
+                    serverId = attributes.path("uuid").asText();
+                    if (!wanted.contains(serverId)) {
+                        continue;
+                    }
+                }
+                listed.add(serverId);
+                visitor.accept(serverId, attributes);
+            }
+            JsonNode pagination = root.path("meta").path("pagination");
+            int currentPage = pagination.path("current_page").asInt(page);
+            int totalPages = pagination.path("total_pages").asInt(currentPage);
+            if (currentPage >= totalPages || listed.size() >= wanted.size()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return fetchServerList(currentPage + 1, wanted, listed, visitor);
+        });
+    }
+
+    /**
+     * This method derives the state of a server from its entry in the server list.
+     *
+     * @param attributes the attributes of the server entry
+     * @return the state of the server, or null if the entry does not tell the state
+     */
+    private ServerState getListedState(JsonNode attributes) {
+        JsonNode currentState = attributes.get("current_state");
+        if (currentState != null && currentState.isTextual()) {
+            return ServerState.fromPanelState(currentState.asText());
+        }
+        JsonNode status = attributes.get("status");
+        if (attributes.path("is_suspended").asBoolean(false)
+                || attributes.path("is_installing").asBoolean(false)
+                || (status != null && status.isTextual())) {
+            return ServerState.OFFLINE;
+        }
+        return null;
+    }
+
+    /**
+     * This method checks if a server is empty.
+     * The player count is read from the occupancy tracker, so no player collection is built.
+     *
+     * @param serverName the name of the server
+     * @return true if the server is empty, false otherwise
+     */
+    @Override
+    public boolean isServerEmpty(String serverName) {
+        return occupancyTracker.isEmpty(serverName);
+    }
+}
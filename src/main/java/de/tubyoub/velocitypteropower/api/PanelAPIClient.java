@@ -1,7 +1,88 @@
 package de.tubyoub.velocitypteropower.api;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
 public interface PanelAPIClient {
     void powerServer(String serverId, String signal);
     boolean isServerOnline(String serverId);
     boolean isServerEmpty(String serverName);
+
+    /**
+     * Sends a power signal to a server without blocking the calling thread.
+     *
+     * @param serverId the ID of the server
+     * @param signal the power signal to send
+     * @return a future that completes with the answer of the panel
+     */
+    CompletableFuture<PowerResult> powerServerAsync(String serverId, String signal);
+
+    /**
+     * Sends a command to the console of a server without blocking the calling thread.
+     * The server has to be running to accept commands.
+     *
+     * @param serverId the ID of the server
+     * @param command the command to send, without a leading slash
+     * @return a future that completes with the answer of the panel
+     */
+    CompletableFuture<PowerResult> sendCommandAsync(String serverId, String command);
+
+    /**
+     * Requests the power state of a server without blocking the calling thread.
+     * The request is sent in the interactive lane of the rate limiter.
+     *
+     * @param serverId the ID of the server
+     * @return a future that completes with the state of the server
+     */
+    default CompletableFuture<ServerState> getServerStateAsync(String serverId) {
+        return getServerStateAsync(serverId, RequestPriority.INTERACTIVE);
+    }
+
+    /**
+     * Requests the power state of a server without blocking the calling thread.
+     *
+     * @param serverId the ID of the server
+     * @param priority the lane the request waits in if the rate limit of the panel is reached
+     * @return a future that completes with the state of the server
+     */
+    CompletableFuture<ServerState> getServerStateAsync(String serverId, RequestPriority priority);
+
+    /**
+     * Requests the state and the resource usage of a server without blocking the calling thread.
+     *
+     * @param serverId the ID of the server
+     * @param priority the lane the request waits in if the rate limit of the panel is reached
+     * @return a future that completes with the resources of the server
+     */
+    CompletableFuture<ServerResources> getServerResourcesAsync(String serverId, RequestPriority priority);
+
+    /**
+     * Requests the power states of several servers without blocking the calling thread.
+     * The default implementation requests every server on its own, panels with a bulk endpoint should override it.
+     * Servers whose state could not be requested are reported as UNKNOWN.
+     * The requests are sent in the background lane of the rate limiter.
+     *
+     * @param serverIds the IDs of the servers
+     * @return a future that completes with a map of server IDs to their states
+     */
+    default CompletableFuture<Map<String, ServerState>> getServerStatesAsync(Collection<String> serverIds) {
+        Map<String, ServerState> states = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] requests = serverIds.stream()
+            .map(serverId -> getServerStateAsync(serverId, RequestPriority.BACKGROUND).handle((state, throwable) -> states.put(serverId, state != null ? state : ServerState.UNKNOWN)))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(requests).thenApply(ignored -> states);
+    }
+
+    /**
+     * Requests the names of the nodes several servers are running on, without blocking the calling thread.
+     * The default implementation knows no nodes, panels that list the node of a server should override it.
+     *
+     * @param serverIds the IDs of the servers
+     * @return a future that completes with a map of server IDs to node names, servers without a known node are missing
+     */
+    default CompletableFuture<Map<String, String>> getServerNodesAsync(Collection<String> serverIds) {
+        return CompletableFuture.completedFuture(Map.of());
+    }
 }
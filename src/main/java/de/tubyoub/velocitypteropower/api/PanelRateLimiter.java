@@ -0,0 +1,246 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+import de.tubyoub.velocitypteropower.ConfigurationManager;
+import de.tubyoub.velocitypteropower.StatisticsRegistry;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class limits the rate of requests sent to the panel with a token bucket.
+ * Requests wait in one of two lanes: interactive requests are served first and may use the whole budget,
+ * background requests leave a configured share of the budget for interactive ones.
+ * The rate adapts to the X-RateLimit-Limit, X-RateLimit-Remaining and Retry-After headers of the panel.
+ */
+public class PanelRateLimiter {
+    private final ConfigurationManager configurationManager;
+    private final ScheduledExecutorService scheduler;
+    private final Deque<PendingRequest> interactiveQueue = new ArrayDeque<>();
+    private final Deque<PendingRequest> backgroundQueue = new ArrayDeque<>();
+    private final LongAdder interactiveWaitMillis = new LongAdder();
+    private final LongAdder backgroundWaitMillis = new LongAdder();
+    private final LongAdder throttledResponses = new LongAdder();
+    private double capacity;
+    private double tokens;
+    private double tokensPerNano;
+    private long lastRefill;
+    private long blockedUntil;
+    private boolean drainScheduled;
+
+    /**
+     * Constructor for the PanelRateLimiter class.
+     *
+     * @param configurationManager the configuration manager to read the limits from
+     * @param statistics the registry the queue and wait statistics are registered in
+     */
+    public PanelRateLimiter(ConfigurationManager configurationManager, StatisticsRegistry statistics) {
+        this.configurationManager = configurationManager;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VelocityPteroPower-RateLimiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastRefill = System.nanoTime();
+        this.blockedUntil = lastRefill;
+        reload();
+        this.tokens = capacity;
+
+        statistics.register("rateLimit.interactive.queued", () -> queueSize(interactiveQueue));
+        statistics.register("rateLimit.background.queued", () -> queueSize(backgroundQueue));
+        statistics.register("rateLimit.interactive.waitMillis", interactiveWaitMillis::sum);
+        statistics.register("rateLimit.background.waitMillis", backgroundWaitMillis::sum);
+        statistics.register("rateLimit.throttledResponses", throttledResponses::sum);
+    }
+
+    /**
+     * This method applies the configured request rate.
+     */
+    public synchronized void reload() {
+        setRequestsPerMinute(Math.max(1, configurationManager.getRequestsPerMinute()));
+    }
+
+    /**
+     * This method waits for a request token.
+     * The returned future completes immediately if a token is available.
+     *
+     * @param priority the lane of the request
+     * @return a future that completes once the request may be sent
+     */
+    public CompletableFuture<Void> acquire(RequestPriority priority) {
+        synchronized (this) {
+            Deque<PendingRequest> queue = priority == RequestPriority.INTERACTIVE ? interactiveQueue : backgroundQueue;
+            refill();
+            if (queue.isEmpty() && (priority == RequestPriority.INTERACTIVE || interactiveQueue.isEmpty()) && tryTake(priority)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            PendingRequest pending = new PendingRequest(priority);
+            queue.addLast(pending);
+            scheduleDrain(0);
+            return pending.future;
+        }
+    }
+
+    /**
+     * This method adapts the limiter to the rate limit headers of a panel response.
+     *
+     * @param response the response of the panel
+     */
+    public void onResponse(HttpResponse<?> response) {
+        OptionalLong limit = response.headers().firstValueAsLong("X-RateLimit-Limit");
+        OptionalLong remaining = response.headers().firstValueAsLong("X-RateLimit-Remaining");
+        synchronized (this) {
+            refill();
+            if (limit.isPresent() && limit.getAsLong() > 0 && limit.getAsLong() != (long) capacity) {
+                setRequestsPerMinute(limit.getAsLong());
+            }
+            if (remaining.isPresent()) {
+                tokens = Math.min(tokens, remaining.getAsLong());
+            }
+            if (response.statusCode() == 429) {
+                throttledResponses.increment();
+                long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                blockedUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, retryAfter));
+                tokens = 0;
+            }
+        }
+    }
+
+    /**
+     * This method stops the limiter. Waiting requests are released so they can fail or finish.
+     */
+    public void shutdown() {
+        List<PendingRequest> released = new ArrayList<>();
+        synchronized (this) {
+            released.addAll(interactiveQueue);
+            released.addAll(backgroundQueue);
+            interactiveQueue.clear();
+            backgroundQueue.clear();
+        }
+        for (PendingRequest pending : released) {
+            pending.future.complete(null);
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void setRequestsPerMinute(long requestsPerMinute) {
+        capacity = requestsPerMinute;
+        tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        tokens = Math.min(tokens, capacity);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    private boolean tryTake(RequestPriority priority) {
+        if (System.nanoTime() - blockedUntil < 0) {
+            return false;
+        }
+        if (tokens >= requiredTokens(priority)) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method returns how many tokens must be available before a request of the lane may take one.
+     * Background requests have to leave the interactive reserve untouched.
+     */
+    private double requiredTokens(RequestPriority priority) {
+        double reserve = priority == RequestPriority.INTERACTIVE ? 0 : capacity * configurationManager.getInteractiveReserve() / 100.0;
+        return 1 + reserve;
+    }
+
+    private void drain() {
+        List<PendingRequest> released = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+            while (!interactiveQueue.isEmpty() && tryTake(RequestPriority.INTERACTIVE)) {
+                released.add(interactiveQueue.pollFirst());
+            }
+            while (interactiveQueue.isEmpty() && !backgroundQueue.isEmpty() && tryTake(RequestPriority.BACKGROUND)) {
+                released.add(backgroundQueue.pollFirst());
+            }
+            if (!interactiveQueue.isEmpty() || !backgroundQueue.isEmpty()) {
+                double required = requiredTokens(interactiveQueue.isEmpty() ? RequestPriority.BACKGROUND : RequestPriority.INTERACTIVE);
+                long untilToken = (long) Math.ceil(Math.max(0, required - tokens) / tokensPerNano);
+                long untilUnblocked = Math.max(0, blockedUntil - System.nanoTime());
+                scheduleDrain(Math.max(TimeUnit.MILLISECONDS.toNanos(10), Math.max(untilToken, untilUnblocked)));
+            }
+        }
+        // Requests are released outside of the lock, because completing the future starts sending them
+        for (PendingRequest pending : released) {
+            release(pending);
+        }
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (drainScheduled || scheduler.isShutdown()) {
+            return;
+        }
+        drainScheduled = true;
+        scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void release(PendingRequest pending) {
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.queuedAt);
+        if (pending.priority == RequestPriority.INTERACTIVE) {
+            interactiveWaitMillis.add(waited);
+        } else {
+            backgroundWaitMillis.add(waited);
+        }
+        pending.future.complete(null);
+    }
+
+    private synchronized long queueSize(Deque<PendingRequest> queue) {
+        return queue.size();
+    }
+
+    private static final class PendingRequest {
+        private final RequestPriority priority;
+        private final long queuedAt = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingRequest(RequestPriority priority) {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package de.tubyoub.velocitypteropower.api;
+
+import de.tubyoub.velocitypteropower.ConfigurationManager;
+import de.tubyoub.velocitypteropower.VelocityPteroPower;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds the HTTP connection to the panel that is shared by all API clients.
+ * It keeps a single HTTP/2 capable client with a pooled keep-alive connection and a bounded executor,
+ * so panel requests no longer pay for a new client, thread pool and TLS handshake every time.
+ */
+public class PanelTransport {
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final ThreadPoolExecutor executor;
+    private final HttpClient httpClient;
+    private final PanelRateLimiter rateLimiter;
+    private final Map<String, URI> uriCache = new ConcurrentHashMap<>();
+    private volatile String baseUrl;
+    private volatile String[] defaultHeaders;
+    private volatile Duration requestTimeout;
+
+    /**
+     * Constructor for the PanelTransport class.
+     * The connect timeout and the thread count are read once, the request timeout and
+     * the credentials are refreshed with {@link #reload()}.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public PanelTransport(VelocityPteroPower plugin) {
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+
+        int threads = Math.max(1, configurationManager.getPanelThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "VelocityPteroPower-Panel-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(configurationManager.getConnectTimeout()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        this.rateLimiter = new PanelRateLimiter(configurationManager, plugin.getStatistics());
+        reload();
+    }
+
+    /**
+     * This method rebuilds the request templates from the current configuration.
+     * It should be called after the configuration has been reloaded.
+     */
+    public void reload() {
+        this.baseUrl = configurationManager.getPterodactylUrl();
+        this.defaultHeaders = new String[] {
+                "Accept", "application/json",
+                "Content-Type", "application/json",
+                "Authorization", "Bearer " + configurationManager.getPterodactylApiKey()
+        };
+        this.requestTimeout = Duration.ofSeconds(configurationManager.getRequestTimeout());
+        uriCache.clear();
+        rateLimiter.reload();
+    }
+
+    /**
+     * This method returns the URI of a panel endpoint.
+     * URIs are cached, so repeated calls for the same endpoint do not parse the URL again.
+     *
+     * @param path the path of the endpoint relative to the panel URL
+     * @return the URI of the endpoint
+     */
+    public URI uri(String path) {
+        return uriCache.computeIfAbsent(path, key -> URI.create(baseUrl + key));
+    }
+
+    /**
+     * This method returns the URI of a client API endpoint of a server.
+     *
+     * @param serverId the ID of the server
+     * @param endpoint the endpoint, for example "power" or "resources"
+     * @return the URI of the endpoint
+     */
+    public URI serverUri(String serverId, String endpoint) {
+        return uri("api/client/servers/" + serverId + "/" + endpoint);
+    }
+
+    /**
+     * This method creates a request builder for the given URI with the default headers and timeout applied.
+     *
+     * @param uri the URI of the request
+     * @return the prepared request builder
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .headers(defaultHeaders)
+                .timeout(requestTimeout);
+    }
+
+    /**
+     * This method sends an interactive request and blocks until the response is available.
+     *
+     * @param request the request to send
+     * @param bodyHandler the handler for the response body
+     * @return the response
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        rateLimiter.acquire(RequestPriority.INTERACTIVE).join();
+        HttpResponse<T> response = httpClient.send(request, bodyHandler);
+        rateLimiter.onResponse(response);
+        return response;
+    }
+
+    /**
+     * This method sends an interactive request asynchronously.
+     *
+     * @param request the request to send
+     * @param bodyHandler the handler for the response body
+     * @return a future that completes with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return sendAsync(request, bodyHandler, RequestPriority.INTERACTIVE);
+    }
+
+    /**
+     * This method sends a request asynchronously once the rate limiter allows it.
+     *
+     * @param request the request to send
+     * @param bodyHandler the handler for the response body
+     * @param priority the lane the request waits in if the rate limit is reached
+     * @return a future that completes with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, RequestPriority priority) {
+        return rateLimiter.acquire(priority)
+                .thenCompose(ignored -> httpClient.sendAsync(request, bodyHandler))
+                .whenComplete((response, throwable) -> {
+                    if (response != null) {
+                        rateLimiter.onResponse(response);
+                    }
+                });
+    }
+
+    /**
+     * This method creates a websocket builder that uses the shared client of the transport.
+     * The Origin header is set to the panel URL, which Wings requires for the connection.
+     *
+     * @return the prepared websocket builder
+     */
+    public WebSocket.Builder newWebSocketBuilder() {
+        String origin = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        return httpClient.newWebSocketBuilder()
+                .header("Origin", origin)
+                .connectTimeout(Duration.ofSeconds(configurationManager.getConnectTimeout()));
+    }
+
+    /**
+     * This method shuts down the executor of the transport.
+     * Requests that are still running are allowed to finish.
+     */
+    public void shutdown() {
+        rateLimiter.shutdown();
+        executor.shutdown();
+        logger.info("Panel transport shut down");
+    }
+}
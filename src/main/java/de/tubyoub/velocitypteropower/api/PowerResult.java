@@ -0,0 +1,72 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+/**
+ * This class represents the answer of the panel to a power signal or a console command.
+ */
+public class PowerResult {
+    private final String signal;
+    private final int statusCode;
+
+    /**
+     * Constructor for the PowerResult class.
+     *
+     * @param signal the power signal or command that was sent
+     * @param statusCode the HTTP status code returned by the panel
+     */
+    public PowerResult(String signal, int statusCode) {
+        this.signal = signal;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * This method returns the power signal or command that was sent.
+     *
+     * @return the power signal or command
+     */
+    public String getSignal() {
+        return signal;
+    }
+
+    /**
+     * This method returns the HTTP status code returned by the panel.
+     *
+     * @return the HTTP status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * This method returns whether the panel accepted the power signal or command.
+     *
+     * @return true if the panel accepted the signal, false otherwise
+     */
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+}
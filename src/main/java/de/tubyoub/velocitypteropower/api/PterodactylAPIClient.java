@@ -22,118 +22,26 @@
  *  SOFTWARE.
  */
 
+
 package de.tubyoub.velocitypteropower.api;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.velocitypowered.api.plugin.Plugin;
-import com.velocitypowered.api.proxy.ProxyServer;
-import com.velocitypowered.api.proxy.server.RegisteredServer;
-import de.tubyoub.velocitypteropower.ConfigurationManager;
 import de.tubyoub.velocitypteropower.VelocityPteroPower;
-import org.slf4j.Logger;
-
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides methods to interact with the Pterodactyl API.
  * It includes methods to power a server, check if a server is online, and check if a server is empty.
  */
 
-public class PterodactylAPIClient implements PanelAPIClient{
-    public final Logger logger;
-    public final ConfigurationManager configurationManager;
-    public final ProxyServer proxyServer;
+public class PterodactylAPIClient extends AbstractPanelAPIClient {
 
     /**
      * Constructor for the PterodactylAPIClient class.
-     * It initializes the logger, configuration manager, and proxy server from the provided plugin instance.
+     * It initializes the logger, configuration manager, proxy server and panel transport from the provided plugin instance.
      *
      * @param plugin the VelocityPteroPower plugin instance
      */
 
     public PterodactylAPIClient(VelocityPteroPower plugin){
-        this.logger = plugin.getLogger();
-        this.configurationManager = plugin.getConfigurationManager();
-        this.proxyServer = plugin.getProxyServer();
-    }
-
-    /**
-     * This method sends a power signal to a server.
-     *
-     * @param serverId the ID of the server
-     * @param signal the power signal to send
-     */
-    @Override
-    public void powerServer(String serverId, String signal) {
-        try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(configurationManager.getPterodactylUrl() + "api/client/servers/" + serverId + "/power"))
-                    .header("Accept", "application/json")
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + configurationManager.getPterodactylApiKey())
-                    .POST(HttpRequest.BodyPublishers.ofString("{\"signal\": \"" + signal + "\"}"))
-                    .build();
-
-            client.send(request, HttpResponse.BodyHandlers.ofString());
-        } catch (Exception e) {
-            logger.error("Error powering server.", e);
-        }
-    }
-
-
-    /**
-     * This method checks if a server is online.
-     *
-     * @param serverId the ID of the server
-     * @return true if the server is online, false otherwise
-     */
-    @Override
-    public boolean isServerOnline(String serverId) {
-        try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(configurationManager.getPterodactylUrl() + "api/client/servers/" + serverId + "/resources"))
-                    .header("Accept", "application/json")
-                     .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + configurationManager.getPterodactylApiKey())
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            String responseBody = response.body();
-            if (response.statusCode() == 200)  {
-                if (responseBody.contains("{\"object\":\"stats\",\"attributes\":{\"current_state\":\"running\"")) {
-                    return true;
-                }
-            } else {
-                return false;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-        return false;
-    }
-
-    /**
-     * This method checks if a server is online.
-     *
-     * @param serverName the name of the server
-     * @return true if the server is online, false otherwise
-     */
-    @Override
-    public boolean isServerEmpty(String serverName) {
-        Optional<RegisteredServer> server = proxyServer.getServer(serverName);
-        return server.map(value -> value.getPlayersConnected().isEmpty()).orElse(true);
+        super(plugin);
     }
 }
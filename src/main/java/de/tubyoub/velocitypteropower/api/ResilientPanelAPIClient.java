@@ -0,0 +1,292 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+import de.tubyoub.velocitypteropower.ConfigurationManager;
+import de.tubyoub.velocitypteropower.VelocityPteroPower;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This class makes the requests to the panel resilient against short outages.
+ * It wraps another PanelAPIClient, retries failed requests with an exponential, jittered backoff
+ * and opens a circuit breaker after too many failures in a row.
+ * While the circuit breaker is open, requests fail immediately and the last known state of a server is served instead.
+ */
+public class ResilientPanelAPIClient implements PanelAPIClient {
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final PanelAPIClient delegate;
+    private final Map<String, ServerState> lastKnownStates = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialRunning;
+
+    /**
+     * Constructor for the ResilientPanelAPIClient class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     * @param delegate the API client that sends the requests
+     */
+    public ResilientPanelAPIClient(VelocityPteroPower plugin, PanelAPIClient delegate) {
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.delegate = delegate;
+        plugin.getStatistics().register("resilience.retries", retries::sum);
+        plugin.getStatistics().register("resilience.rejectedRequests", rejectedRequests::sum);
+        plugin.getStatistics().register("resilience.circuitOpen", () -> isCircuitOpen() ? 1 : 0);
+    }
+
+    @Override
+    public void powerServer(String serverId, String signal) {
+        try {
+            powerServerAsync(serverId, signal).join();
+        } catch (Exception e) {
+            logger.error("Error powering server.", e);
+        }
+    }
+
+    @Override
+    public boolean isServerOnline(String serverId) {
+        try {
+            return getServerStateAsync(serverId).join() == ServerState.RUNNING;
+        } catch (Exception e) {
+            logger.error("Error checking the status of server: " + serverId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isServerEmpty(String serverName) {
+        return delegate.isServerEmpty(serverName);
+    }
+
+    @Override
+    public CompletableFuture<PowerResult> powerServerAsync(String serverId, String signal) {
+        return execute(() -> delegate.powerServerAsync(serverId, signal).thenApply(result -> {
+            if (result.getStatusCode() == 429 || result.getStatusCode() >= 500) {
+                throw new PanelRequestException("Could not send " + signal + " to server " + serverId, result.getStatusCode());
+            }
+            return result;
+        }), 0);
+    }
+
+    /**
+     * This method sends a console command with retries.
+     * Only a rate limited answer is retried, the panel answers with a server error if the server is not running,
+     * which says nothing about the health of the panel.
+     */
+    @Override
+    public CompletableFuture<PowerResult> sendCommandAsync(String serverId, String command) {
+        return execute(() -> delegate.sendCommandAsync(serverId, command).thenApply(result -> {
+            if (result.getStatusCode() == 429) {
+                throw new PanelRequestException("Could not send a command to server " + serverId, result.getStatusCode());
+            }
+            return result;
+        }), 0);
+    }
+
+    /**
+     * This method requests the state of a server with retries.
+     * If the panel can not be reached, the last known state of the server is returned.
+     *
+     * @param serverId the ID of the server
+     * @param priority the lane the request waits in if the rate limit of the panel is reached
+     * @return a future that completes with the state of the server
+     */
+    @Override
+    public CompletableFuture<ServerState> getServerStateAsync(String serverId, RequestPriority priority) {
+        return execute(() -> delegate.getServerStateAsync(serverId, priority), 0)
+                .thenApply(state -> {
+                    lastKnownStates.put(serverId, state);
+                    return state;
+                })
+                .exceptionally(throwable -> {
+                    ServerState lastKnown = lastKnownStates.get(serverId);
+                    if (lastKnown == null) {
+                        throw throwable instanceof CompletionException ? (CompletionException) throwable : new CompletionException(throwable);
+                    }
+                    logger.debug("Serving last known state of server " + serverId + ": " + throwable.getMessage());
+                    return lastKnown;
+                });
+    }
+
+    /**
+     * This method requests the resources of a server with retries.
+     *
+     * @param serverId the ID of the server
+     * @param priority the lane the request waits in if the rate limit of the panel is reached
+     * @return a future that completes with the resources of the server
+     */
+    @Override
+    public CompletableFuture<ServerResources> getServerResourcesAsync(String serverId, RequestPriority priority) {
+        return execute(() -> delegate.getServerResourcesAsync(serverId, priority), 0).thenApply(resources -> {
+            lastKnownStates.put(serverId, resources.effectiveState());
+            return resources;
+        });
+    }
+
+    /**
+     * This method requests the states of several servers with retries.
+     * Servers that could not be requested get their last known state, or UNKNOWN if there is none.
+     *
+     * @param serverIds the IDs of the servers
+     * @return a future that completes with a map of server IDs to their states
+     */
+    @Override
+    public CompletableFuture<Map<String, ServerState>> getServerStatesAsync(Collection<String> serverIds) {
+        return execute(() -> delegate.getServerStatesAsync(serverIds), 0).handle((states, throwable) -> {
+            Map<String, ServerState> result = new HashMap<>();
+            for (String serverId : serverIds) {
+                ServerState state = states != null ? states.getOrDefault(serverId, ServerState.UNKNOWN) : ServerState.UNKNOWN;
+                if (state == ServerState.UNKNOWN) {
+                    state = lastKnownStates.getOrDefault(serverId, ServerState.UNKNOWN);
+                } else {
+                    lastKnownStates.put(serverId, state);
+                }
+                result.put(serverId, state);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getServerNodesAsync(Collection<String> serverIds) {
+        return execute(() -> delegate.getServerNodesAsync(serverIds), 0);
+    }
+
+    /**
+     * This method returns whether the circuit breaker is open and requests are currently rejected.
+     *
+     * @return true if the circuit breaker is open, false otherwise
+     */
+    public synchronized boolean isCircuitOpen() {
+        return circuitState == CircuitState.OPEN;
+    }
+
+    private <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request, int attempt) {
+        if (!tryAcquirePermission()) {
+            rejectedRequests.increment();
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new IllegalStateException("The panel is unavailable, requests are paused"));
+            return rejected;
+        }
+        CompletableFuture<T> result;
+        try {
+            result = request.get();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.handle((value, throwable) -> {
+            if (throwable == null) {
+                onSuccess();
+                return CompletableFuture.completedFuture(value);
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (!isFailure(cause)) {
+                onSuccess();
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+            onFailure();
+            if (attempt >= configurationManager.getMaxRetries() || isCircuitOpen()) {
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+            retries.increment();
+            long maxDelay = configurationManager.getRetryDelay() * (1L << Math.min(attempt, 16));
+            long delay = ThreadLocalRandom.current().nextLong(maxDelay / 2, maxDelay + 1);
+            return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> execute(request, attempt + 1));
+        }).thenCompose(future -> future);
+    }
+
+    /**
+     * This method decides whether an error means the panel is unavailable.
+     * Client errors like an unknown server ID do not count as failures of the panel.
+     */
+    private boolean isFailure(Throwable throwable) {
+        if (throwable instanceof PanelRequestException) {
+            return ((PanelRequestException) throwable).isRetryable();
+        }
+        return throwable instanceof IOException || throwable.getCause() instanceof IOException;
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        if (circuitState == CircuitState.CLOSED) {
+            return true;
+        }
+        if (circuitState == CircuitState.OPEN && System.nanoTime() - openedAt >= TimeUnit.SECONDS.toNanos(configurationManager.getCircuitOpenDuration())) {
+            circuitState = CircuitState.HALF_OPEN;
+            trialRunning = false;
+        }
+        if (circuitState == CircuitState.HALF_OPEN && !trialRunning) {
+            trialRunning = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void onSuccess() {
+        if (circuitState != CircuitState.CLOSED) {
+            logger.info("The panel is reachable again");
+        }
+        circuitState = CircuitState.CLOSED;
+        consecutiveFailures = 0;
+        trialRunning = false;
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        if (circuitState == CircuitState.HALF_OPEN || (circuitState == CircuitState.CLOSED && consecutiveFailures >= configurationManager.getFailureThreshold())) {
+            if (circuitState == CircuitState.CLOSED) {
+                logger.warn("The panel did not answer " + consecutiveFailures + " requests in a row, pausing requests for "
+                        + configurationManager.getCircuitOpenDuration() + " seconds");
+            }
+            circuitState = CircuitState.OPEN;
+            openedAt = System.nanoTime();
+            trialRunning = false;
+        }
+    }
+
+    private enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
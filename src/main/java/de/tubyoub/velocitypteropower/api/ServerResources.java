@@ -0,0 +1,145 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This record holds the state and the resource usage of a server as reported by the resources endpoint of the panel.
+ *
+ * @param state the power state of the server
+ * @param suspended whether the server is suspended
+ * @param memoryBytes the memory used by the server in bytes
+ * @param cpuAbsolute the CPU usage of the server in percent of one core
+ * @param diskBytes the disk space used by the server in bytes
+ * @param networkRxBytes the bytes received by the server
+ * @param networkTxBytes the bytes sent by the server
+ * @param uptime the uptime of the server in milliseconds
+ */
+public record ServerResources(ServerState state, boolean suspended, long memoryBytes, double cpuAbsolute,
+                              long diskBytes, long networkRxBytes, long networkTxBytes, long uptime) {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * This method returns the state of the server with suspended servers reported as offline.
+     *
+     * @return the effective state of the server
+     */
+    public ServerState effectiveState() {
+        return suspended ? ServerState.OFFLINE : state;
+    }
+
+    /**
+     * This method parses the body of a resources response.
+     * The body is read token by token, so the order of the keys and the formatting do not matter
+     * and no intermediate string or tree is built.
+     *
+     * @param body the body of the response
+     * @return the parsed resources
+     * @throws IOException if the body can not be read or is not a stats object
+     */
+    public static ServerResources parse(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("attributes".equals(field)) {
+                    return parseAttributes(parser);
+                }
+                parser.skipChildren();
+            }
+            throw new JsonParseException(parser, "The response does not contain attributes");
+        }
+    }
+
+    private static ServerResources parseAttributes(JsonParser parser) throws IOException {
+        ServerState state = ServerState.UNKNOWN;
+        boolean suspended = false;
+        long memoryBytes = 0;
+        double cpuAbsolute = 0;
+        long diskBytes = 0;
+        long networkRxBytes = 0;
+        long networkTxBytes = 0;
+        long uptime = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "current_state":
+                    state = ServerState.fromPanelState(parser.getValueAsString());
+                    break;
+                case "is_suspended":
+                    suspended = parser.getValueAsBoolean();
+                    break;
+                case "resources":
+                    if (parser.currentToken() != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String resource = parser.getCurrentName();
+                        parser.nextToken();
+                        switch (resource) {
+                            case "memory_bytes":
+                                memoryBytes = parser.getValueAsLong();
+                                break;
+                            case "cpu_absolute":
+                                cpuAbsolute = parser.getValueAsDouble();
+                                break;
+                            case "disk_bytes":
+                                diskBytes = parser.getValueAsLong();
+                                break;
+                            case "network_rx_bytes":
+                                networkRxBytes = parser.getValueAsLong();
+                                break;
+                            case "network_tx_bytes":
+                                networkTxBytes = parser.getValueAsLong();
+                                break;
+                            case "uptime":
+                                uptime = parser.getValueAsLong();
+                                break;
+                            default:
+                                parser.skipChildren();
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new ServerResources(state, suspended, memoryBytes, cpuAbsolute, diskBytes, networkRxBytes, networkTxBytes, uptime);
+    }
+}
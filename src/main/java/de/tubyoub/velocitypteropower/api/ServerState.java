@@ -0,0 +1,61 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+/**
+ * This enum represents the power state of a server as reported by the panel.
+ */
+public enum ServerState {
+    RUNNING,
+    STARTING,
+    STOPPING,
+    OFFLINE,
+    UNKNOWN;
+
+    /**
+     * This method converts the state string of the panel into a ServerState.
+     *
+     * @param state the state string of the panel, for example "running"
+     * @return the matching ServerState, or UNKNOWN if the state is not known
+     */
+    public static ServerState fromPanelState(String state) {
+        if (state == null) {
+            return UNKNOWN;
+        }
+        switch (state) {
+            case "running":
+                return RUNNING;
+            case "starting":
+                return STARTING;
+            case "stopping":
+                return STOPPING;
+            case "offline":
+                return OFFLINE;
+            default:
+                return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.ConfigurationManager;
+import de.tubyoub.velocitypteropower.PteroServerInfo;
+import de.tubyoub.velocitypteropower.VelocityPteroPower;
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * This class caches the server states reported by the panel.
+ * It wraps another PanelAPIClient and answers state requests from memory while the cached state is fresh.
+ * Stale states are still served for a while and refreshed in the background (stale-while-revalidate).
+ * Sending a power signal invalidates the cached state of the server.
+ * Starting and stopping states are never served from the cache, because they change quickly.
+ * Concurrent requests for the same server share a single panel request.
+ */
+public class ServerStateCache implements PanelAPIClient {
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final PanelAPIClient delegate;
+    private final Map<String, CachedState> states = new ConcurrentHashMap<>();
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<ServerState>> interactiveInFlight = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ServerState>> backgroundInFlight = new ConcurrentHashMap<>();
+    private final LongAdder deduplicatedRequests = new LongAdder();
+    private final AtomicBoolean bulkRefreshRunning = new AtomicBoolean();
+    private ScheduledTask refreshTask;
+
+    /**
+     * Constructor for the ServerStateCache class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     * @param delegate the API client that is asked when a state is not cached
+     */
+    public ServerStateCache(VelocityPteroPower plugin, PanelAPIClient delegate) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.delegate = delegate;
+        plugin.getStatistics().register("cache.deduplicatedRequests", deduplicatedRequests::sum);
+        plugin.getStatistics().register("cache.entries", states::size);
+    }
+
+    /**
+     * This method starts the background refresh of stale states.
+     * If the refresh is already running, it is restarted with the current configuration.
+     */
+    public synchronized void start() {
+        stop();
+        int interval = configurationManager.getCacheRefreshInterval();
+        if (interval <= 0) {
+            return;
+        }
+        refreshTask = plugin.getProxyServer().getScheduler().buildTask(plugin, this::refreshStale)
+                .delay(interval, TimeUnit.SECONDS)
+                .repeat(interval, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the background refresh of stale states.
+     */
+    public synchronized void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<ServerState> getServerStateAsync(String serverId, RequestPriority priority) {
+        CachedState cached = states.get(serverId);
+        if (cached != null && cached.isStable()) {
+            long age = System.nanoTime() - cached.timestamp;
+            if (age <= TimeUnit.SECONDS.toNanos(configurationManager.getCacheTtl())) {
+                return CompletableFuture.completedFuture(cached.state);
+            }
+            if (age <= TimeUnit.SECONDS.toNanos(configurationManager.getCacheMaxAge())) {
+                refreshInBackground(serverId);
+                return CompletableFuture.completedFuture(cached.state);
+            }
+        }
+        return load(serverId, priority);
+    }
+
+    /**
+     * This method always asks the panel, because resource usage changes constantly.
+     * The state contained in the answer is stored in the cache.
+     */
+    @Override
+    public CompletableFuture<ServerResources> getServerResourcesAsync(String serverId, RequestPriority priority) {
+        long requestedAt = System.nanoTime();
+        return delegate.getServerResourcesAsync(serverId, priority).whenComplete((resources, throwable) -> {
+            if (resources != null) {
+                store(serverId, resources.effectiveState(), requestedAt);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<PowerResult> sendCommandAsync(String serverId, String command) {
+        return delegate.sendCommandAsync(serverId, command);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getServerNodesAsync(Collection<String> serverIds) {
+        return delegate.getServerNodesAsync(serverIds);
+    }
+
+    @Override
+    public CompletableFuture<PowerResult> powerServerAsync(String serverId, String signal) {
+        invalidate(serverId);
+        return delegate.powerServerAsync(serverId, signal).whenComplete((result, throwable) -> invalidate(serverId));
+    }
+
+    @Override
+    public void powerServer(String serverId, String signal) {
+        invalidate(serverId);
+        delegate.powerServer(serverId, signal);
+        invalidate(serverId);
+    }
+
+    @Override
+    public boolean isServerOnline(String serverId) {
+        try {
+            return getServerStateAsync(serverId).join() == ServerState.RUNNING;
+        } catch (Exception e) {
+            logger.error("Error checking the status of server: " + serverId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isServerEmpty(String serverName) {
+        return delegate.isServerEmpty(serverName);
+    }
+
+    /**
+     * This method removes the cached state of a server.
+     * States that are requested before the invalidation but arrive after it are discarded.
+     *
+     * @param serverId the ID of the server
+     */
+    public void invalidate(String serverId) {
+        invalidations.put(serverId, System.nanoTime());
+        states.remove(serverId);
+        interactiveInFlight.remove(serverId);
+        backgroundInFlight.remove(serverId);
+    }
+
+    /**
+     * This method removes all cached states.
+     */
+    public void invalidateAll() {
+        long now = System.nanoTime();
+        for (String serverId : states.keySet()) {
+            invalidations.put(serverId, now);
+        }
+        states.clear();
+        interactiveInFlight.clear();
+        backgroundInFlight.clear();
+    }
+
+    /**
+     * This method stores a state that was pushed by the panel, for example through the websocket.
+     *
+     * @param serverId the ID of the server
+     * @param state the new state of the server
+     */
+    public void update(String serverId, ServerState state) {
+        states.put(serverId, new CachedState(state, System.nanoTime()));
+    }
+
+    /**
+     * This method returns the cached state of a server without asking the panel.
+     *
+     * @param serverId the ID of the server
+     * @return the cached state, or UNKNOWN if no state is cached
+     */
+    public ServerState getCachedState(String serverId) {
+        CachedState cached = states.get(serverId);
+        return cached != null ? cached.state : ServerState.UNKNOWN;
+    }
+
+    /**
+     * This method requests the state of a server, joining a request for the same server that is already running.
+     * Requests are only shared within their lane or upwards: a background request may join an interactive one,
+     * but an interactive request never waits behind a background request in the rate limiter.
+     */
+    private CompletableFuture<ServerState> load(String serverId, RequestPriority priority) {
+        Map<String, CompletableFuture<ServerState>> inFlight = priority == RequestPriority.INTERACTIVE ? interactiveInFlight : backgroundInFlight;
+        CompletableFuture<ServerState> pending = interactiveInFlight.get(serverId);
+        if (pending == null && priority == RequestPriority.BACKGROUND) {
+            pending = backgroundInFlight.get(serverId);
+        }
+        if (pending != null) {
+            deduplicatedRequests.increment();
+            return pending;
+        }
+        CompletableFuture<ServerState> request = new CompletableFuture<>();
+        pending = inFlight.putIfAbsent(serverId, request);
+        if (pending != null) {
+            deduplicatedRequests.increment();
+            return pending;
+        }
+
+        long requestedAt = System.nanoTime();
+        delegate.getServerStateAsync(serverId, priority).whenComplete((state, throwable) -> {
+            if (state != null) {
+                store(serverId, state, requestedAt);
+            }
+            inFlight.remove(serverId, request);
+            if (throwable != null) {
+                request.completeExceptionally(throwable);
+            } else {
+                request.complete(state);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * This method returns how many state requests were answered by a request that was already running.
+     *
+     * @return the number of deduplicated requests
+     */
+    public long getDeduplicatedRequests() {
+        return deduplicatedRequests.sum();
+    }
+
+    private void store(String serverId, ServerState state, long requestedAt) {
+        Long invalidatedAt = invalidations.get(serverId);
+        if (invalidatedAt != null && invalidatedAt - requestedAt > 0) {
+            return;
+        }
+        states.put(serverId, new CachedState(state, System.nanoTime()));
+    }
+
+    private void refreshInBackground(String serverId) {
+        if (!refreshing.add(serverId)) {
+            return;
+        }
+        load(serverId, RequestPriority.BACKGROUND).whenComplete((state, throwable) -> {
+            refreshing.remove(serverId);
+            if (throwable != null) {
+                logger.debug("Background refresh of server " + serverId + " failed: " + throwable.getMessage());
+            }
+        });
+    }
+
+    private void refreshStale() {
+        if (configurationManager.isCacheBulkRefresh()) {
+            refreshAll();
+            return;
+        }
+        long ttl = TimeUnit.SECONDS.toNanos(configurationManager.getCacheTtl());
+        long now = System.nanoTime();
+        for (Map.Entry<String, CachedState> entry : states.entrySet()) {
+            if (now - entry.getValue().timestamp > ttl) {
+                refreshInBackground(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * This method refreshes the states of all configured servers with a single bulk request.
+     * States that could not be determined are left untouched.
+     */
+    private void refreshAll() {
+        Map<String, PteroServerInfo> serverInfoMap = configurationManager.getServerInfoMap();
+        if (serverInfoMap == null || serverInfoMap.isEmpty() || !bulkRefreshRunning.compareAndSet(false, true)) {
+            return;
+        }
+        Set<String> serverIds = serverInfoMap.values().stream()
+                .map(PteroServerInfo::getServerId)
+                .collect(Collectors.toSet());
+        long requestedAt = System.nanoTime();
+        delegate.getServerStatesAsync(serverIds).whenComplete((refreshed, throwable) -> {
+            bulkRefreshRunning.set(false);
+            if (throwable != null) {
+                logger.debug("Bulk refresh of the server states failed: " + throwable.getMessage());
+                return;
+            }
+            for (Map.Entry<String, ServerState> entry : refreshed.entrySet()) {
+                if (entry.getValue() != ServerState.UNKNOWN) {
+                    store(entry.getKey(), entry.getValue(), requestedAt);
+                }
+            }
+        });
+    }
+
+    private static final class CachedState {
+        private final ServerState state;
+        private final long timestamp;
+
+        private CachedState(ServerState state, long timestamp) {
+            this.state = state;
+            this.timestamp = timestamp;
+        }
+
+        private boolean isStable() {
+            return state == ServerState.RUNNING || state == ServerState.OFFLINE;
+        }
+    }
+}
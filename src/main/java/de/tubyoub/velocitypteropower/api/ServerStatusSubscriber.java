@@ -0,0 +1,415 @@
+/*
+ * This file is part of VelocityPteroPower, licensed under the MIT License.
+ *
+ *  Copyright (c) TubYoub <github@tubyoub.de>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+
+package de.tubyoub.velocitypteropower.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.tubyoub.velocitypteropower.ConfigurationManager;
+import de.tubyoub.velocitypteropower.VelocityPteroPower;
+import org.slf4j.Logger;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * This class receives the state of servers through the websocket of the panel.
+ * Connections are only opened for servers that are starting or running and are closed
+ * once the server stopped or the connection was not needed for the configured idle timeout.
+ * Every state change is passed to the registered listeners.
+ */
+public class ServerStatusSubscriber {
+    private final VelocityPteroPower plugin;
+    private final Logger logger;
+    private final ConfigurationManager configurationManager;
+    private final PanelTransport transport;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, ServerState>> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledTask idleTask;
+
+    /**
+     * Constructor for the ServerStatusSubscriber class.
+     *
+     * @param plugin the VelocityPteroPower plugin instance
+     */
+    public ServerStatusSubscriber(VelocityPteroPower plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.configurationManager = plugin.getConfigurationManager();
+        this.transport = plugin.getPanelTransport();
+        plugin.getStatistics().register("websocket.connections", subscriptions::size);
+    }
+
+    /**
+     * This method starts the task that closes idle connections.
+     * If the websocket is disabled in the configuration, all connections are closed instead.
+     */
+    public synchronized void start() {
+        stop();
+        if (!isEnabled()) {
+            return;
+        }
+        idleTask = plugin.getProxyServer().getScheduler().buildTask(plugin, this::closeIdle)
+                .delay(10, TimeUnit.SECONDS)
+                .repeat(10, TimeUnit.SECONDS)
+                .schedule();
+    }
+
+    /**
+     * This method stops the idle task and closes all connections.
+     */
+    public synchronized void stop() {
+        if (idleTask != null) {
+            idleTask.cancel();
+            idleTask = null;
+        }
+        for (String serverId : subscriptions.keySet()) {
+            unsubscribe(serverId);
+        }
+    }
+
+    /**
+     * This method returns whether the websocket is enabled in the configuration.
+     *
+     * @return true if the websocket is enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return configurationManager.isWebsocketEnabled();
+    }
+
+    /**
+     * This method registers a listener that is called for every state received through a websocket.
+     *
+     * @param listener the listener, called with the server ID and the new state
+     */
+    public void addListener(BiConsumer<String, ServerState> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * This method opens the websocket of a server if it is not open yet.
+     * An already open connection is marked as used, which delays its idle timeout.
+     *
+     * @param serverId the ID of the server
+     */
+    public void subscribe(String serverId) {
+        if (!isEnabled()) {
+            return;
+        }
+        Subscription created = new Subscription(serverId);
+        Subscription existing = subscriptions.putIfAbsent(serverId, created);
+        if (existing != null) {
+            existing.touch();
+            return;
+        }
+        created.connect();
+    }
+
+    /**
+     * This method returns whether the websocket of a server is open or being opened.
+     *
+     * @param serverId the ID of the server
+     * @return true if the server is subscribed, false otherwise
+     */
+    public boolean isSubscribed(String serverId) {
+        return subscriptions.containsKey(serverId);
+    }
+
+    /**
+     * This method subscribes to a server and returns a future that completes once the server reports the given state.
+     * If the connection is closed before, the future is cancelled.
+     *
+     * @param serverId the ID of the server
+     * @param state the state to wait for
+     * @return a future that completes with the state
+     */
+    public CompletableFuture<ServerState> awaitState(String serverId, ServerState state) {
+        subscribe(serverId);
+        Subscription subscription = subscriptions.get(serverId);
+        if (subscription == null) {
+            CompletableFuture<ServerState> cancelled = new CompletableFuture<>();
+            cancelled.cancel(false);
+            return cancelled;
+        }
+        return subscription.await(state);
+    }
+
+    /**
+     * This method closes the websocket of a server.
+     *
+     * @param serverId the ID of the server
+     */
+    public void unsubscribe(String serverId) {
+        Subscription subscription = subscriptions.remove(serverId);
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    private void closeIdle() {
+        long idleTimeout = TimeUnit.SECONDS.toNanos(configurationManager.getWebsocketIdleTimeout());
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions.values()) {
+            if (now - subscription.lastUsed > idleTimeout) {
+                logger.debug("Closing idle websocket of server " + subscription.serverId);
+                unsubscribe(subscription.serverId);
+            }
+        }
+    }
+
+    /**
+     * This method requests the token and the socket URL of a server from the panel.
+     *
+     * @param serverId the ID of the server
+     * @return a future that completes with the "data" node of the answer
+     */
+    private CompletableFuture<JsonNode> fetchCredentials(String serverId) {
+        HttpRequest request = transport.newRequest(transport.serverUri(serverId, "websocket"))
+                .GET()
+                .build();
+        return transport.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Panel answered with status code " + response.statusCode());
+            }
+            try {
+                return objectMapper.readTree(response.body()).path("data");
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not parse websocket credentials", e);
+            }
+        });
+    }
+
+    private void publish(String serverId, ServerState state) {
+        for (BiConsumer<String, ServerState> listener : listeners) {
+            try {
+                listener.accept(serverId, state);
+            } catch (Exception e) {
+                logger.error("Error handling state of server " + serverId, e);
+            }
+        }
+    }
+
+    /**
+     * This class represents the websocket connection to a single server.
+     */
+    private final class Subscription implements WebSocket.Listener {
+        private final String serverId;
+        private final StringBuilder buffer = new StringBuilder();
+        private final Map<ServerState, CompletableFuture<ServerState>> waiters = new ConcurrentHashMap<>();
+        private volatile long lastUsed = System.nanoTime();
+        private volatile boolean closed;
+        private volatile boolean active;
+        private volatile WebSocket current;
+        private CompletableFuture<WebSocket> sending;
+
+        private Subscription(String serverId) {
+            this.serverId = serverId;
+        }
+
+        private void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        private CompletableFuture<ServerState> await(ServerState state) {
+            CompletableFuture<ServerState> waiter = waiters.computeIfAbsent(state, key -> new CompletableFuture<>());
+            if (closed) {
+                waiter.cancel(false);
+            }
+            return waiter;
+        }
+
+        /**
+         * This method opens the connection. If the subscription was closed or replaced while the connection was being opened,
+         * the new connection is closed right away instead of being kept.
+         */
+        private void connect() {
+            CompletableFuture<JsonNode> credentialsFuture;
+            try {
+                credentialsFuture = fetchCredentials(serverId);
+            } catch (RuntimeException e) {
+                credentialsFuture = CompletableFuture.failedFuture(e);
+            }
+            credentialsFuture
+                    .thenCompose(credentials -> transport.newWebSocketBuilder()
+                            .buildAsync(URI.create(credentials.path("socket").asText()), this)
+                            .thenAccept(webSocket -> {
+                                synchronized (this) {
+                                    if (closed || subscriptions.get(serverId) != this) {
+                                        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+                                        return;
+                                    }
+                                    current = webSocket;
+                                    sending = CompletableFuture.completedFuture(webSocket);
+                                }
+                                authenticate(credentials.path("token").asText());
+                            }))
+                    .exceptionally(throwable -> {
+                        logger.warn("Could not open the websocket of server " + serverId + ": " + throwable.getMessage());
+                        subscriptions.remove(serverId, this);
+                        close();
+                        return null;
+                    });
+        }
+
+        private void authenticate(String token) {
+            send("{\"event\":\"auth\",\"args\":[\"" + token + "\"]}");
+        }
+
+        /**
+         * Messages are sent one after another, because a websocket does not allow overlapping sends.
+         */
+        private synchronized void send(String message) {
+            if (sending == null || closed) {
+                return;
+            }
+            sending = sending.thenCompose(webSocket -> webSocket.sendText(message, true));
+        }
+
+        /**
+         * This method replaces the connection with a new one, keeping the waiting futures.
+         */
+        private synchronized void reconnect() {
+            if (closed) {
+                return;
+            }
+            if (sending != null) {
+                sending.thenAccept(webSocket -> webSocket.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+            }
+            current = null;
+            sending = null;
+            connect();
+        }
+
+        private void close() {
+            closed = true;
+            synchronized (this) {
+                if (sending != null) {
+                    sending.thenAccept(webSocket -> webSocket.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+                }
+            }
+            for (CompletableFuture<ServerState> waiter : waiters.values()) {
+                waiter.cancel(false);
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            buffer.append(data);
+            if (last) {
+                String message = buffer.toString();
+                buffer.setLength(0);
+                handle(message);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (!closed && webSocket == current) {
+                logger.debug("Websocket of server " + serverId + " was closed: " + statusCode + " " + reason);
+                subscriptions.remove(serverId, this);
+                close();
+            }
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            if (webSocket != current) {
+                return;
+            }
+            logger.warn("Websocket error for server " + serverId + ": " + error.getMessage());
+            subscriptions.remove(serverId, this);
+            close();
+        }
+
+        private void handle(String message) {
+            JsonNode root;
+            try {
+                root = objectMapper.readTree(message);
+            } catch (JsonProcessingException e) {
+                logger.debug("Could not parse websocket message of server " + serverId + ": " + e.getMessage());
+                return;
+            }
+            JsonNode args = root.path("args");
+            switch (root.path("event").asText()) {
+                case "auth success":
+                    send("{\"event\":\"send stats\",\"args\":[null]}");
+                    break;
+                case "status":
+                    onState(ServerState.fromPanelState(args.path(0).asText()));
+                    break;
+                case "stats":
+                    try {
+                        onState(ServerState.fromPanelState(objectMapper.readTree(args.path(0).asText()).path("state").asText()));
+                    } catch (JsonProcessingException e) {
+                        logger.debug("Could not parse stats of server " + serverId + ": " + e.getMessage());
+                    }
+                    break;
+                case "token expiring":
+                    fetchCredentials(serverId).thenAccept(credentials -> authenticate(credentials.path("token").asText()));
+                    break;
+                case "token expired":
+                case "jwt error":
+                    logger.debug("Websocket token of server " + serverId + " expired, reconnecting");
+                    reconnect();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void onState(ServerState state) {
+            if (state == ServerState.UNKNOWN) {
+                return;
+            }
+            publish(serverId, state);
+            CompletableFuture<ServerState> waiter = waiters.remove(state);
+            if (waiter != null) {
+                waiter.complete(state);
+            }
+            if (state == ServerState.OFFLINE && active) {
+                unsubscribe(serverId);
+            } else if (state != ServerState.OFFLINE) {
+                active = true;
+            }
+        }
+    }
+}